@@ -0,0 +1,61 @@
+package org.mickael.librarymsreservation.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class AsyncConfig {
+
+    /**
+     * Bounded executor dedicated to the calls made to the other micro services.
+     * When the queue is full the caller thread runs the call itself, so the request
+     * is slowed down instead of being rejected.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor feignTaskExecutor(@Value("${reservation.async.core-pool-size:8}") int corePoolSize,
+                                                    @Value("${reservation.async.max-pool-size:32}") int maxPoolSize,
+                                                    @Value("${reservation.async.queue-capacity:200}") int queueCapacity){
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("feign-");
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setTaskDecorator(securityContextTaskDecorator());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Copy the security context and the request attributes of the calling thread
+     * into the worker thread, and restore the worker state once the task is done.
+     */
+    private TaskDecorator securityContextTaskDecorator(){
+        return runnable -> {
+            SecurityContext securityContext = SecurityContextHolder.getContext();
+            RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+            return () -> {
+                SecurityContext previousContext = SecurityContextHolder.getContext();
+                RequestAttributes previousAttributes = RequestContextHolder.getRequestAttributes();
+                try {
+                    SecurityContextHolder.setContext(securityContext);
+                    RequestContextHolder.setRequestAttributes(requestAttributes);
+                    runnable.run();
+                } finally {
+                    SecurityContextHolder.setContext(previousContext);
+                    RequestContextHolder.setRequestAttributes(previousAttributes);
+                }
+            };
+        };
+    }
+}
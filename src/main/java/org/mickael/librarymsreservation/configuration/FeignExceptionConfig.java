@@ -1,5 +1,6 @@
 package org.mickael.librarymsreservation.configuration;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.mickael.librarymsreservation.exception.CustomErrorDecoder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -8,7 +9,7 @@ import org.springframework.context.annotation.Configuration;
 public class FeignExceptionConfig {
 
     @Bean
-    public CustomErrorDecoder customErrorDecoder(){
-        return new CustomErrorDecoder();
+    public CustomErrorDecoder customErrorDecoder(MeterRegistry meterRegistry){
+        return new CustomErrorDecoder(meterRegistry);
     }
 }
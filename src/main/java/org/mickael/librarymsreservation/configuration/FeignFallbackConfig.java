@@ -0,0 +1,26 @@
+package org.mickael.librarymsreservation.configuration;
+
+import feign.codec.Decoder;
+import feign.optionals.OptionalDecoder;
+import org.mickael.librarymsreservation.proxy.LastKnownGoodDecoder;
+import org.mickael.librarymsreservation.service.contract.LastKnownGoodServiceContract;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.cloud.openfeign.support.DefaultGzipDecoder;
+import org.springframework.cloud.openfeign.support.ResponseEntityDecoder;
+import org.springframework.cloud.openfeign.support.SpringDecoder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class FeignFallbackConfig {
+
+    /**
+     * The default decoder of the Feign clients, which also keeps the responses for the fallbacks.
+     * The client built by Spring Cloud does not inflate the responses: the gzipped ones (feign.compression.response) are inflated here.
+     */
+    @Bean
+    public Decoder feignDecoder(ObjectFactory<HttpMessageConverters> messageConverters, LastKnownGoodServiceContract lastKnownGoodServiceContract){
+        return new LastKnownGoodDecoder(new OptionalDecoder(new ResponseEntityDecoder(new DefaultGzipDecoder(new SpringDecoder(messageConverters)))), lastKnownGoodServiceContract);
+    }
+}
@@ -0,0 +1,51 @@
+package org.mickael.librarymsreservation.configuration;
+
+import feign.Client;
+import org.mickael.librarymsreservation.proxy.HedgingClient;
+import org.mickael.librarymsreservation.service.contract.HedgingServiceContract;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+@ConditionalOnProperty(name = "reservation.hedging.enabled", havingValue = "true")
+public class FeignHedgingConfig {
+
+    /**
+     * Threads running the hedged calls and their duplicates. Without queue: when all the threads are busy
+     * a call runs on its Hystrix thread and is not hedged.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor hedgingTaskExecutor(@Value("${reservation.hedging.pool-size:32}") int poolSize){
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("hedging-");
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(0);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Wrap the client of the Feign proxies (the Ribbon load balanced one) in a HedgingClient.
+     * Static and lazy, so the post processor does not create the beans it needs too early.
+     */
+    @Bean
+    public static BeanPostProcessor hedgingClientPostProcessor(ObjectProvider<HedgingServiceContract> hedgingServiceContract,
+                                                               @Qualifier("hedgingTaskExecutor") ObjectProvider<ThreadPoolTaskExecutor> hedgingTaskExecutor){
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof Client && !(bean instanceof HedgingClient)){
+                    return new HedgingClient((Client) bean, hedgingServiceContract.getObject(), hedgingTaskExecutor.getObject().getThreadPoolExecutor());
+                }
+                return bean;
+            }
+        };
+    }
+}
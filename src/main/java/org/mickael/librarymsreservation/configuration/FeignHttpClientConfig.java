@@ -0,0 +1,31 @@
+package org.mickael.librarymsreservation.configuration;
+
+import feign.httpclient.ApacheHttpClient;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnClass(ApacheHttpClient.class)
+@ConditionalOnProperty(name = "feign.httpclient.enabled", havingValue = "true", matchIfMissing = true)
+public class FeignHttpClientConfig {
+
+    /**
+     * Size, leased, available and pending connections of the pool shared by the Feign proxies
+     * (httpcomponents.httpclient.pool.* tagged httpclient=feign). The pool is created by Spring Cloud
+     * OpenFeign from the feign.httpclient.* properties.
+     */
+    @Bean
+    public MeterBinder feignConnectionPoolMetrics(ObjectProvider<HttpClientConnectionManager> connectionManagers){
+        return meterRegistry -> connectionManagers.orderedStream()
+                                                  .filter(PoolingHttpClientConnectionManager.class::isInstance)
+                                                  .forEach(connectionManager -> new PoolingHttpClientConnectionManagerMetricsBinder(
+                                                          (PoolingHttpClientConnectionManager) connectionManager, "feign").bindTo(meterRegistry));
+    }
+}
@@ -0,0 +1,48 @@
+package org.mickael.librarymsreservation.controller;
+
+import org.mickael.librarymsreservation.service.contract.CustomerReservationCacheServiceContract;
+import org.mickael.librarymsreservation.service.contract.LoanCacheServiceContract;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/reservations/cache")
+@PreAuthorize("isAuthenticated()")
+public class CacheRestController {
+
+    private final LoanCacheServiceContract loanCacheServiceContract;
+    private final CustomerReservationCacheServiceContract customerReservationCacheServiceContract;
+
+    @Autowired
+    public CacheRestController(LoanCacheServiceContract loanCacheServiceContract,
+                               CustomerReservationCacheServiceContract customerReservationCacheServiceContract) {
+        this.loanCacheServiceContract = loanCacheServiceContract;
+        this.customerReservationCacheServiceContract = customerReservationCacheServiceContract;
+    }
+
+    /**
+     * Called by the loan service when a loan is created or returned for the book.
+     */
+    @DeleteMapping("/loans/book/{bookId}")
+    public void evictLoanReturnDates(@PathVariable Integer bookId){
+        loanCacheServiceContract.evict(bookId);
+    }
+
+    @DeleteMapping("/loans")
+    public void evictAllLoanReturnDates(){
+        loanCacheServiceContract.evictAll();
+    }
+
+    @GetMapping("/loans/stats")
+    public Map<String, Number> getLoanReturnDatesStatistics(){
+        return loanCacheServiceContract.getStatistics();
+    }
+
+    @GetMapping("/customers/stats")
+    public Map<String, Number> getCustomerReservationsStatistics(){
+        return customerReservationCacheServiceContract.getStatistics();
+    }
+}
@@ -0,0 +1,62 @@
+package org.mickael.librarymsreservation.controller;
+
+import org.mickael.librarymsreservation.model.ExportFormat;
+import org.mickael.librarymsreservation.service.contract.ReservationExportServiceContract;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.zip.GZIPOutputStream;
+
+@RestController
+@RequestMapping("/api/reservations/export")
+@PreAuthorize("isAuthenticated()")
+public class ExportRestController {
+
+    private static final int GZIP_BUFFER_SIZE = 8192;
+
+    private final ReservationExportServiceContract reservationExportServiceContract;
+    private final long timeoutMillis;
+
+    @Autowired
+    public ExportRestController(ReservationExportServiceContract reservationExportServiceContract,
+                                @Value("${reservation.export.timeout:30m}") Duration timeout) {
+        this.reservationExportServiceContract = reservationExportServiceContract;
+        this.timeoutMillis = timeout.toMillis();
+    }
+
+    /**
+     * All the reservations, one per line, written while they are read from the database.
+     * With gzip=true the body is compressed and sent with Content-Encoding: gzip.
+     * The body is written on an async thread, interrupted after the export timeout.
+     */
+    @GetMapping
+    public WebAsyncTask<Void> exportReservations(@RequestParam(defaultValue = "NDJSON") ExportFormat format,
+                                                 @RequestParam(defaultValue = "false") boolean gzip,
+                                                 HttpServletResponse response){
+        response.setContentType(format.getMediaType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"reservations." + format.getExtension() + "\"");
+        if (gzip){
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return new WebAsyncTask<>(timeoutMillis, () -> {
+            OutputStream outputStream = response.getOutputStream();
+            if (gzip){
+                //sync flush so each chunk flushed by the export reaches the client
+                GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream, GZIP_BUFFER_SIZE, true);
+                reservationExportServiceContract.export(format, gzipOutputStream);
+                gzipOutputStream.finish();
+            } else {
+                reservationExportServiceContract.export(format, outputStream);
+            }
+            outputStream.flush();
+            return null;
+        });
+    }
+}
@@ -1,39 +1,88 @@
 package org.mickael.librarymsreservation.controller;
 
+import org.mickael.librarymsreservation.exception.BadRequestException;
 import org.mickael.librarymsreservation.exception.NotFoundException;
+import org.mickael.librarymsreservation.model.NotificationReport;
 import org.mickael.librarymsreservation.model.Reservation;
-import org.mickael.librarymsreservation.proxy.FeignBookProxy;
-import org.mickael.librarymsreservation.proxy.FeignLoanProxy;
+import org.mickael.librarymsreservation.model.ReservationCheck;
+import org.mickael.librarymsreservation.model.ReservationFilter;
+import org.mickael.librarymsreservation.model.ReservationImportReport;
+import org.mickael.librarymsreservation.model.ReservationKey;
+import org.mickael.librarymsreservation.model.ReservationPage;
+import org.mickael.librarymsreservation.service.contract.LoanCacheServiceContract;
+import org.mickael.librarymsreservation.service.contract.ReservationCheckServiceContract;
 import org.mickael.librarymsreservation.service.contract.ReservationServiceContract;
-import org.mickael.librarymsreservation.utils.HandlerToken;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/reservations")
 @PreAuthorize("isAuthenticated()")
 public class ReservationRestController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
     private final ReservationServiceContract reservationServiceContract;
-    private final FeignLoanProxy feignLoanProxy;
-    private final FeignBookProxy feignBookProxy;
+    private final ReservationCheckServiceContract reservationCheckServiceContract;
+    private final LoanCacheServiceContract loanCacheServiceContract;
+    private final int maxImportSize;
+    private final int maxLookupIds;
 
     @Autowired
-    public ReservationRestController(ReservationServiceContract reservationServiceContract, FeignLoanProxy feignLoanProxy, FeignBookProxy feignBookProxy) {
+    public ReservationRestController(ReservationServiceContract reservationServiceContract, ReservationCheckServiceContract reservationCheckServiceContract,
+                                     LoanCacheServiceContract loanCacheServiceContract,
+                                     @Value("${reservation.import.max-size:5000}") int maxImportSize,
+                                     @Value("${reservation.lookup.max-ids:200}") int maxLookupIds) {
         this.reservationServiceContract = reservationServiceContract;
-        this.feignLoanProxy = feignLoanProxy;
-        this.feignBookProxy = feignBookProxy;
+        this.reservationCheckServiceContract = reservationCheckServiceContract;
+        this.loanCacheServiceContract = loanCacheServiceContract;
+        this.maxImportSize = maxImportSize;
+        this.maxLookupIds = maxLookupIds;
     }
 
+    /**
+     * Reservations ordered by id, one page at a time.
+     * The cursor of the next page is returned in the X-Next-Cursor header and its url in the Link header (absent on the last page).
+     * With count=true the number of reservations matching the filters is returned in the X-Total-Count header:
+     * the count reads them all, the dashboards polling the list should not ask for it.
+     */
     @GetMapping
-    public List<Reservation> getReservations(){
-        return reservationServiceContract.findAll();
+    public ResponseEntity<List<Reservation>> getReservations(@RequestParam(required = false) String cursor,
+                                                             @RequestParam(required = false) Integer size,
+                                                             @RequestParam(required = false) Integer bookId,
+                                                             @RequestParam(required = false) Integer customerId,
+                                                             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                             @RequestParam(defaultValue = "false") boolean count){
+        ReservationPage reservationPage = reservationServiceContract.findPage(cursor, size, new ReservationFilter(bookId, customerId, from, to), count);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (reservationPage.getNextCursor() != null){
+            response.header(NEXT_CURSOR_HEADER, reservationPage.getNextCursor());
+            response.header(HttpHeaders.LINK, "<" + ServletUriComponentsBuilder.fromCurrentRequest()
+                                                                              .replaceQueryParam("cursor", reservationPage.getNextCursor())
+                                                                              .replaceQueryParam("count")
+                                                                              .toUriString() + ">; rel=\"next\"");
+        }
+        if (reservationPage.getTotalCount() != null){
+            response.header(TOTAL_COUNT_HEADER, reservationPage.getTotalCount().toString());
+        }
+        return response.body(reservationPage.getContent());
     }
 
     @GetMapping("/{id}")
@@ -55,32 +104,89 @@ public class ReservationRestController {
         }
     }
 
+    /**
+     * Reservations of several books in one query, ordered by position, by book id.
+     */
+    @GetMapping("/books")
+    public Map<Integer, List<Reservation>> getReservationsByBookIds(@RequestParam Set<Integer> ids){
+        checkLookupSize(ids);
+        return reservationServiceContract.findAllByBookIds(ids);
+    }
+
+    /**
+     * Reservations of several customers in one query, by customer id.
+     */
+    @GetMapping("/customers")
+    public Map<Integer, List<Reservation>> getReservationsByCustomerIds(@RequestParam Set<Integer> ids){
+        checkLookupSize(ids);
+        return reservationServiceContract.findAllByCustomerIds(ids);
+    }
+
+    /**
+     * Check several (customer id, book id) pairs in one query.
+     * @return true when the customer has a reservation for the book, in the order of the request
+     */
+    @PostMapping("/exists")
+    public boolean[] checkIfReservationsExist(@RequestBody List<ReservationKey> reservationKeys){
+        checkLookupSize(reservationKeys);
+        for (ReservationKey reservationKey : reservationKeys){
+            if (reservationKey == null || reservationKey.getCustomerId() == null || reservationKey.getBookId() == null){
+                throw new BadRequestException("Each pair needs a customer id and a book id");
+            }
+        }
+        return reservationServiceContract.checkIfReservationsExist(reservationKeys);
+    }
+
+    private void checkLookupSize(Collection<?> ids){
+        if (ids.size() > maxLookupIds){
+            throw new BadRequestException("No more than " + maxLookupIds + " ids can be requested at once");
+        }
+    }
+
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public Reservation createReservation(@RequestBody Reservation reservation, @RequestHeader("Authorization") String accessToken){
-        List<LocalDate> listReturnLoanDate = feignLoanProxy.getSoonReturned(reservation.getBookId(), HandlerToken.formatToken(accessToken));
-        Integer numberOfCopies = feignBookProxy.numberOfCopyForBook(reservation.getBookId(), HandlerToken.formatToken(accessToken));
-        Integer copiesAvailable = feignBookProxy.numberOfCopyAvailableForBook(reservation.getBookId(), HandlerToken.formatToken(accessToken));
-        if (feignLoanProxy.checkIfLoanExistForCustomerIdAndBookId(reservation.getCustomerId(), reservation.getBookId(), HandlerToken.formatToken(accessToken))){
+        ReservationCheck reservationCheck = reservationCheckServiceContract.checkReservation(reservation.getCustomerId(), reservation.getBookId(), accessToken);
+        if (reservationCheck.isLoanOngoing()){
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Reservation not allowed, loan ongoing");
         } else {
-            return reservationServiceContract.save(reservation, listReturnLoanDate, numberOfCopies, copiesAvailable);
+            return reservationServiceContract.save(reservation, reservationCheck.getListReturnLoanDate(),
+                    reservationCheck.getNumberOfCopies(), reservationCheck.getCopiesAvailable());
         }
     }
 
+    /**
+     * Import of the waiting lists of other libraries: the book services are called once per book, the books in parallel,
+     * and the reservations are inserted in one transaction. The loans of the customers are not checked.
+     * @return the result of each reservation, in the order of the request
+     */
+    @PostMapping("/batch")
+    public ReservationImportReport importReservations(@RequestBody List<Reservation> reservations, @RequestHeader("Authorization") String accessToken){
+        if (reservations.size() > maxImportSize){
+            throw new BadRequestException("No more than " + maxImportSize + " reservations can be imported at once");
+        }
+        Set<Integer> bookIds = new HashSet<>();
+        for (Reservation reservation : reservations){
+            if (reservation != null && reservation.getBookId() != null){
+                bookIds.add(reservation.getBookId());
+            }
+        }
+        Map<Integer, ReservationCheck> reservationCheckByBookId = reservationCheckServiceContract.checkBooks(bookIds, accessToken);
+        return reservationServiceContract.importReservations(reservations, reservationCheckByBookId);
+    }
 
     @DeleteMapping("/customer/{customerId}/book/{bookId}")
     public void deleteReservationAfterLoan(@PathVariable Integer customerId, @PathVariable Integer bookId, @RequestHeader("Authorization") String accessToken){
         reservationServiceContract.delete(
                 reservationServiceContract.findByCustomerIdAndBookId(customerId, bookId).getId(),
-                feignLoanProxy.getSoonReturned(bookId, HandlerToken.formatToken(accessToken)));
+                loanCacheServiceContract.getSoonReturned(bookId, accessToken));
     }
 
     @DeleteMapping("/{reservationId}")
     public void deleteReservationAfterTwoDays(@PathVariable Integer reservationId, @RequestHeader("Authorization") String accessToken){
         Integer bookId = reservationServiceContract.findById(reservationId).getBookId();
         reservationServiceContract.delete(reservationId,
-                feignLoanProxy.getSoonReturned(bookId, HandlerToken.formatToken(accessToken)));
+                loanCacheServiceContract.getSoonReturned(bookId, accessToken));
     }
 
     @GetMapping("/customer/{customerId}/book/{bookId}")
@@ -89,13 +195,13 @@ public class ReservationRestController {
     }
 
     @PutMapping
-    public void updateReservation(){
-        reservationServiceContract.updateReservationsAndSendMail();
+    public NotificationReport updateReservation(){
+        return reservationServiceContract.updateReservationsAndSendMail();
     }
 
     @PutMapping("/book/{bookId}/refresh")
     public void updateDateReservation(@PathVariable Integer bookId, @RequestHeader("Authorization") String accessToken){
-        reservationServiceContract.updateDateResaBookId(bookId, feignLoanProxy.getSoonReturned(bookId, HandlerToken.formatToken(accessToken)));
+        reservationServiceContract.updateDateResaBookId(bookId, loanCacheServiceContract.getSoonReturned(bookId, accessToken));
     }
 
 
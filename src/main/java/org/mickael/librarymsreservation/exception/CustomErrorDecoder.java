@@ -1,19 +1,36 @@
 package org.mickael.librarymsreservation.exception;
 
+import com.netflix.hystrix.exception.HystrixBadRequestException;
 import feign.Response;
 import feign.codec.ErrorDecoder;
+import io.micrometer.core.instrument.MeterRegistry;
 
 public class CustomErrorDecoder implements ErrorDecoder {
 
     private final ErrorDecoder defaultErrorDecoder = new Default();
+    private final MeterRegistry meterRegistry;
 
+    public CustomErrorDecoder(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * The 4xx errors are wrapped in a HystrixBadRequestException: the request was wrong, not the remote service,
+     * they neither open the circuit nor use the fallback. The other errors count as failures of the service.
+     */
     @Override
     public Exception decode(String invoquer, Response response) {
+        meterRegistry.counter("feign.errors", "method", invoquer, "status", String.valueOf(response.status()),
+                "outcome", response.status() < 500 ? "CLIENT_ERROR" : "SERVER_ERROR").increment();
         if (response.status() == 400){
-            return new BadRequestException(response.body().toString());
+            return new HystrixBadRequestException("Bad request", new BadRequestException(response.body().toString()));
         } else if (response.status() == 404){
-            return new NotFoundException(response.body().toString());
+            return new HystrixBadRequestException("Not found", new NotFoundException(response.body().toString()));
+        }
+        Exception exception = defaultErrorDecoder.decode(invoquer, response);
+        if (response.status() < 500){
+            return new HystrixBadRequestException(exception.getMessage(), exception);
         }
-        return defaultErrorDecoder.decode(invoquer, response);
+        return exception;
     }
 }
@@ -0,0 +1,13 @@
+package org.mickael.librarymsreservation.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(code = HttpStatus.SERVICE_UNAVAILABLE, reason = "Remote service unavailable")
+public class ServiceUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+    public ServiceUnavailableException(String errorMessage, Throwable cause) {
+        super(errorMessage, cause);
+    }
+}
@@ -0,0 +1,10 @@
+package org.mickael.librarymsreservation.model;
+
+public enum ImportStatus {
+    CREATED,
+    //customer id or book id missing
+    INVALID,
+    ALREADY_EXIST,
+    //no copy available and no loan to wait for
+    NOT_ALLOWED
+}
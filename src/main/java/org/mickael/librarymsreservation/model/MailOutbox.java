@@ -0,0 +1,56 @@
+package org.mickael.librarymsreservation.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "mail_outbox")
+public class MailOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "public.mail_outbox_mail_outbox_id_seq")
+    @SequenceGenerator(name = "public.mail_outbox_mail_outbox_id_seq", sequenceName = "public.mail_outbox_mail_outbox_id_seq", allocationSize = 1)
+    @Column(name = "mail_outbox_id")
+    private Integer id;
+
+    @Column(name = "mail_from")
+    private String mailFrom;
+
+    @Column(name = "mail_to")
+    private String mailTo;
+
+    @Column(name = "subject")
+    private String subject;
+
+    @Column(name = "body")
+    private String body;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status")
+    private MailStatus status;
+
+    @Column(name = "attempts")
+    private Integer attempts;
+
+    @Column(name = "next_attempt_date")
+    private LocalDateTime nextAttemptDate;
+
+    @Column(name = "creation_date")
+    private LocalDateTime creationDate;
+
+    @Column(name = "sent_date")
+    private LocalDateTime sentDate;
+
+    @Column(name = "last_error")
+    private String lastError;
+
+}
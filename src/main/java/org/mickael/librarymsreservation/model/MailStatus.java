@@ -0,0 +1,7 @@
+package org.mickael.librarymsreservation.model;
+
+public enum MailStatus {
+    PENDING,
+    SENT,
+    DEAD
+}
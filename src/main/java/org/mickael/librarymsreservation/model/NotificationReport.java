@@ -0,0 +1,21 @@
+package org.mickael.librarymsreservation.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class NotificationReport {
+
+    private long sent;
+
+    private long failed;
+
+    //already notified for the same end of priority
+    private long skipped;
+
+}
@@ -0,0 +1,22 @@
+package org.mickael.librarymsreservation.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Comparator;
+
+/**
+ * How the order of the reservations of a book is kept.
+ * POSITION: the position column is the order and is rewritten when a reservation leaves the queue.
+ * TIMESTAMP: the creation date, then the id, is the order and the position is computed when reading.
+ */
+@Getter
+@AllArgsConstructor
+public enum QueueMode {
+
+    POSITION(Comparator.comparing(Reservation::getPosition)),
+    TIMESTAMP(Comparator.comparing(Reservation::getCreationReservationDate).thenComparing(Reservation::getId));
+
+    private final Comparator<Reservation> queueOrder;
+
+}
@@ -1,9 +1,11 @@
 package org.mickael.librarymsreservation.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.time.LocalDate;
@@ -14,12 +16,19 @@ import java.time.LocalDateTime;
 @Setter
 @AllArgsConstructor
 @NoArgsConstructor
-@Table(name = "reservation")
+@Table(name = "reservation", indexes = {
+        @Index(name = "reservation_soon_disponibility_date_idx", columnList = "soon_disponibility_date"),
+        @Index(name = "reservation_book_id_creation_idx", columnList = "book_id, create_reservation_date, reservation_id"),
+        @Index(name = "reservation_customer_id_book_id_idx", columnList = "customer_id, book_id", unique = true)})
+//second-level cache, region configured in application.conf
+@Cacheable
+@org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "reservation")
 public class Reservation {
 
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "public.reservation_reservation_id_seq")
-    @SequenceGenerator(name = "public.reservation_reservation_id_seq", sequenceName = "public.reservation_reservation_id_seq", allocationSize = 1)
+    //must be the increment of the sequence (db/06-reservation-id-seq-increment.sql), the ids are allocated by pooled-lo
+    @SequenceGenerator(name = "public.reservation_reservation_id_seq", sequenceName = "public.reservation_reservation_id_seq", allocationSize = 50)
     @Column(name = "reservation_id")
     private Integer id;
 
@@ -50,8 +59,23 @@ public class Reservation {
     @Column(name = "book_title")
     private String bookTitle;
 
+    //with reservation.queue.mode=TIMESTAMP the position is computed when reading, the column is not maintained
     @Column(name = "position")
     private Integer position;
 
+    @JsonIgnore
+    @Column(name = "notified_date")
+    private LocalDate notifiedDate;
+
+    @JsonIgnore
+    @Column(name = "notified_end_of_priority")
+    private LocalDate notifiedEndOfPriority;
+
+    //incremented by every update, also the bulk and JDBC ones: a flush of a stale reservation fails
+    @JsonIgnore
+    @Version
+    @Column(name = "version")
+    private Integer version;
+
 
 }
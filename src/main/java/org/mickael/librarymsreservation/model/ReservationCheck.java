@@ -0,0 +1,25 @@
+package org.mickael.librarymsreservation.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReservationCheck {
+
+    private List<LocalDate> listReturnLoanDate;
+
+    private Integer numberOfCopies;
+
+    private Integer copiesAvailable;
+
+    private boolean loanOngoing;
+
+}
@@ -0,0 +1,25 @@
+package org.mickael.librarymsreservation.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReservationFilter {
+
+    private Integer bookId;
+
+    private Integer customerId;
+
+    //range of the creation date of the reservation, both included
+    private LocalDate from;
+
+    private LocalDate to;
+
+}
@@ -0,0 +1,23 @@
+package org.mickael.librarymsreservation.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReservationImportReport {
+
+    private long created;
+
+    private long rejected;
+
+    //one result per reservation, in the order of the request
+    private List<ReservationImportResult> results;
+
+}
@@ -0,0 +1,28 @@
+package org.mickael.librarymsreservation.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReservationImportResult {
+
+    //index of the reservation in the request
+    private int index;
+
+    private Integer customerId;
+
+    private Integer bookId;
+
+    private ImportStatus status;
+
+    //only when created
+    private Integer reservationId;
+
+    private Integer position;
+
+}
@@ -0,0 +1,24 @@
+package org.mickael.librarymsreservation.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReservationPage {
+
+    private List<Reservation> content;
+
+    //null on the last page
+    private String nextCursor;
+
+    //reservations matching the filters, null when not requested
+    private Long totalCount;
+
+}
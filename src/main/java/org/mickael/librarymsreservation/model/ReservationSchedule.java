@@ -0,0 +1,14 @@
+package org.mickael.librarymsreservation.model;
+
+import java.time.LocalDate;
+
+/**
+ * Projection of a reservation used to plan its availability notification.
+ */
+public interface ReservationSchedule {
+
+    Integer getId();
+
+    LocalDate getSoonDisponibilityDate();
+
+}
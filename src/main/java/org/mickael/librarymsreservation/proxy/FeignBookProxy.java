@@ -5,19 +5,19 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestHeader;
 
-@FeignClient(name = "library-ms-book", url = "localhost:8100")//il faut modifier les uri avec le nom du ms à appeler
-//@RibbonClient(name = "micro service à appeler")
+@FeignClient(name = "library-ms-book", fallbackFactory = FeignBookProxyFallbackFactory.class)
 public interface FeignBookProxy {
 
-
+    String COPIES_AVAILABLE_NUMBER_PATH = "/api/copies/available-number/book/{bookId}";
+    String COPIES_NUMBER_PATH = "/api/copies/exist-number/book/{bookId}";
 
     @GetMapping("/api/copies/available/book/{bookId}")
     boolean checkIfCopyAvailableForBook(@PathVariable("bookId") Integer bookId, @RequestHeader("Authorization") String accessToken);
 
-    @GetMapping("/api/copies/available-number/book/{bookId}")
+    @GetMapping(COPIES_AVAILABLE_NUMBER_PATH)
     Integer numberOfCopyAvailableForBook(@PathVariable("bookId") Integer bookId, @RequestHeader("Authorization") String accessToken);
 
-    @GetMapping("/api/copies/exist-number/book/{bookId}")
+    @GetMapping(COPIES_NUMBER_PATH)
     Integer numberOfCopyForBook(@PathVariable("bookId") Integer bookId, @RequestHeader("Authorization") String accessToken);
 
 /*
@@ -0,0 +1,51 @@
+package org.mickael.librarymsreservation.proxy;
+
+import feign.hystrix.FallbackFactory;
+import org.mickael.librarymsreservation.exception.ServiceUnavailableException;
+import org.mickael.librarymsreservation.service.contract.LastKnownGoodServiceContract;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Used when the book service fails, is too slow or its circuit is open.
+ */
+@Component
+public class FeignBookProxyFallbackFactory implements FallbackFactory<FeignBookProxy> {
+
+    private final LastKnownGoodServiceContract lastKnownGoodServiceContract;
+
+    private static final String UNAVAILABLE_MSG = "Book service unavailable";
+
+    @Autowired
+    public FeignBookProxyFallbackFactory(LastKnownGoodServiceContract lastKnownGoodServiceContract) {
+        this.lastKnownGoodServiceContract = lastKnownGoodServiceContract;
+    }
+
+    @Override
+    public FeignBookProxy create(Throwable cause) {
+        return new FeignBookProxy() {
+            @Override
+            public boolean checkIfCopyAvailableForBook(Integer bookId, String accessToken) {
+                throw new ServiceUnavailableException(UNAVAILABLE_MSG, cause);
+            }
+
+            @Override
+            public Integer numberOfCopyAvailableForBook(Integer bookId, String accessToken) {
+                return lastKnownGood(COPIES_AVAILABLE_NUMBER_PATH, bookId);
+            }
+
+            @Override
+            public Integer numberOfCopyForBook(Integer bookId, String accessToken) {
+                return lastKnownGood(COPIES_NUMBER_PATH, bookId);
+            }
+
+            private Integer lastKnownGood(String pathTemplate, Integer bookId){
+                Integer number = lastKnownGoodServiceContract.find(pathTemplate, bookId);
+                if (number == null){
+                    throw new ServiceUnavailableException(UNAVAILABLE_MSG, cause);
+                }
+                return number;
+            }
+        };
+    }
+}
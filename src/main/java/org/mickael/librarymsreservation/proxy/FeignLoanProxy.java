@@ -8,10 +8,12 @@ import org.springframework.web.bind.annotation.RequestHeader;
 import java.time.LocalDate;
 import java.util.List;
 
-@FeignClient(name = "library-ms-loan", url = "localhost:8200")
+@FeignClient(name = "library-ms-loan", fallbackFactory = FeignLoanProxyFallbackFactory.class)
 public interface FeignLoanProxy {
 
-    @GetMapping("/api/loans/book/{bookId}/soon-returned")
+    String SOON_RETURNED_PATH = "/api/loans/book/{bookId}/soon-returned";
+
+    @GetMapping(SOON_RETURNED_PATH)
     List<LocalDate> getSoonReturned(@PathVariable("bookId") Integer bookId, @RequestHeader("Authorization") String accessToken);
 
     @GetMapping("/api/loans/customer/{customerId}/book/{bookId}")
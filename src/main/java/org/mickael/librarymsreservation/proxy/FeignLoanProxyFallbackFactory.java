@@ -0,0 +1,46 @@
+package org.mickael.librarymsreservation.proxy;
+
+import feign.hystrix.FallbackFactory;
+import org.mickael.librarymsreservation.exception.ServiceUnavailableException;
+import org.mickael.librarymsreservation.service.contract.LastKnownGoodServiceContract;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Used when the loan service fails, is too slow or its circuit is open.
+ */
+@Component
+public class FeignLoanProxyFallbackFactory implements FallbackFactory<FeignLoanProxy> {
+
+    private final LastKnownGoodServiceContract lastKnownGoodServiceContract;
+
+    private static final String UNAVAILABLE_MSG = "Loan service unavailable";
+
+    @Autowired
+    public FeignLoanProxyFallbackFactory(LastKnownGoodServiceContract lastKnownGoodServiceContract) {
+        this.lastKnownGoodServiceContract = lastKnownGoodServiceContract;
+    }
+
+    @Override
+    public FeignLoanProxy create(Throwable cause) {
+        return new FeignLoanProxy() {
+            @Override
+            public List<LocalDate> getSoonReturned(Integer bookId, String accessToken) {
+                List<LocalDate> listReturnLoanDate = lastKnownGoodServiceContract.find(SOON_RETURNED_PATH, bookId);
+                if (listReturnLoanDate == null){
+                    throw new ServiceUnavailableException(UNAVAILABLE_MSG, cause);
+                }
+                return listReturnLoanDate;
+            }
+
+            //decides if the customer may reserve the book: never answered from an old response
+            @Override
+            public boolean checkIfLoanExistForCustomerIdAndBookId(Integer customerId, Integer bookId, String accessToken) {
+                throw new ServiceUnavailableException(UNAVAILABLE_MSG, cause);
+            }
+        };
+    }
+}
@@ -0,0 +1,180 @@
+package org.mickael.librarymsreservation.proxy;
+
+import feign.Client;
+import feign.MethodMetadata;
+import feign.Request;
+import feign.Response;
+import org.mickael.librarymsreservation.service.contract.HedgingServiceContract;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Client of the Feign proxies sending a duplicate of a GET request still unanswered after the delay
+ * of its method (see HedgingServiceImpl), the first answer wins and the other attempt is cancelled.
+ * The duplicate goes through the load balancer again, which prefers an instance without the first request.
+ * The calls run on the hedging executor, the Hystrix thread waits for them: the Hystrix timeout still applies.
+ */
+public class HedgingClient implements Client {
+
+    private final Client delegate;
+    private final HedgingServiceContract hedgingServiceContract;
+    private final ExecutorService hedgingTaskExecutor;
+
+    public HedgingClient(Client delegate, HedgingServiceContract hedgingServiceContract, ExecutorService hedgingTaskExecutor) {
+        this.delegate = delegate;
+        this.hedgingServiceContract = hedgingServiceContract;
+        this.hedgingTaskExecutor = hedgingTaskExecutor;
+    }
+
+    @Override
+    public Response execute(Request request, Request.Options options) throws IOException {
+        MethodMetadata methodMetadata = request.requestTemplate() == null ? null : request.requestTemplate().methodMetadata();
+        //the load balanced url starts with the name of the client
+        String clientName = URI.create(request.url()).getHost();
+        if (request.httpMethod() != Request.HttpMethod.GET || methodMetadata == null || !hedgingServiceContract.isHedged(clientName)){
+            return delegate.execute(request, options);
+        }
+        String method = methodMetadata.configKey();
+        long delay = hedgingServiceContract.onRequest(clientName, method);
+        if (delay < 0){
+            return timedExecute(request, options, method);
+        }
+        BlockingQueue<Attempt> completed = new LinkedBlockingQueue<>();
+        Attempt primary = new Attempt(request, options, method, completed);
+        try {
+            hedgingTaskExecutor.execute(primary);
+        } catch (RejectedExecutionException ex) {
+            return timedExecute(request, options, method);
+        }
+
+        Attempt hedge = null;
+        Response response = null;
+        try {
+            try {
+                response = primary.get(delay, TimeUnit.NANOSECONDS);
+                return response;
+            } catch (TimeoutException ex) {
+                hedge = hedge(clientName, request, options, method, completed);
+            }
+            response = hedge == null ? primary.get() : first(completed, hedge, method);
+            return response;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + method);
+        } catch (ExecutionException ex) {
+            throw rethrow(ex.getCause());
+        } finally {
+            //the loser, or both attempts after an interruption, is interrupted and its answer closed
+            discard(primary, response);
+            discard(hedge, response);
+        }
+    }
+
+    /**
+     * @return the duplicate of the request, null when it is not sent (budget spent, no free thread)
+     */
+    private Attempt hedge(String clientName, Request request, Request.Options options, String method, BlockingQueue<Attempt> completed) {
+        if (!hedgingServiceContract.acquireHedge(clientName, method)){
+            return null;
+        }
+        Attempt hedge = new Attempt(request, options, method, completed);
+        try {
+            hedgingTaskExecutor.execute(hedge);
+        } catch (RejectedExecutionException ex) {
+            hedgingServiceContract.recordSaturated(clientName, method);
+            return null;
+        }
+        hedgingServiceContract.recordSent(method);
+        return hedge;
+    }
+
+    /**
+     * @return the first successful answer of the request and its hedge, or the last failure
+     */
+    private Response first(BlockingQueue<Attempt> completed, Attempt hedge, String method) throws InterruptedException, ExecutionException {
+        Attempt first = completed.take();
+        Attempt winner = first;
+        Response response;
+        try {
+            response = first.get();
+        } catch (ExecutionException ex) {
+            winner = completed.take();
+            response = winner.get();
+        }
+        if (winner == hedge){
+            hedgingServiceContract.recordWon(method);
+        }
+        return response;
+    }
+
+    private void discard(Attempt attempt, Response answer) {
+        if (attempt == null || attempt.cancel(true) || attempt.isCancelled()){
+            return;
+        }
+        //already completed, the get does not wait
+        try {
+            Response response = attempt.get();
+            if (response != answer){
+                response.close();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            //failed, nothing to close
+        }
+    }
+
+    private Response timedExecute(Request request, Request.Options options, String method) throws IOException {
+        long start = System.nanoTime();
+        Response response = delegate.execute(request, options);
+        hedgingServiceContract.recordLatency(method, System.nanoTime() - start);
+        return response;
+    }
+
+    /**
+     * A call of the delegate run on the hedging executor. Cancelled, its thread is interrupted and its answer,
+     * which a blocking read may still deliver, is closed at once.
+     */
+    private final class Attempt extends FutureTask<Response> {
+
+        private final BlockingQueue<Attempt> completed;
+
+        private Attempt(Request request, Request.Options options, String method, BlockingQueue<Attempt> completed) {
+            super(() -> timedExecute(request, options, method));
+            this.completed = completed;
+        }
+
+        @Override
+        protected void set(Response response) {
+            super.set(response);
+            if (isCancelled()){
+                response.close();
+            }
+        }
+
+        @Override
+        protected void done() {
+            completed.add(this);
+        }
+    }
+
+    private IOException rethrow(Throwable cause) {
+        if (cause instanceof IOException){
+            return (IOException) cause;
+        }
+        if (cause instanceof RuntimeException){
+            throw (RuntimeException) cause;
+        }
+        return new IOException(cause);
+    }
+}
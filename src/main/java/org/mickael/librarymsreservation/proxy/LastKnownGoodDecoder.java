@@ -0,0 +1,35 @@
+package org.mickael.librarymsreservation.proxy;
+
+import feign.MethodMetadata;
+import feign.Response;
+import feign.codec.Decoder;
+import org.mickael.librarymsreservation.service.contract.LastKnownGoodServiceContract;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.URI;
+
+/**
+ * Decode the successful responses with the default decoder, and keep them for the fallbacks.
+ * The errors do not reach the decoder: a fallback response is never recorded.
+ */
+public class LastKnownGoodDecoder implements Decoder {
+
+    private final Decoder delegate;
+    private final LastKnownGoodServiceContract lastKnownGoodServiceContract;
+
+    public LastKnownGoodDecoder(Decoder delegate, LastKnownGoodServiceContract lastKnownGoodServiceContract) {
+        this.delegate = delegate;
+        this.lastKnownGoodServiceContract = lastKnownGoodServiceContract;
+    }
+
+    @Override
+    public Object decode(Response response, Type type) throws IOException {
+        Object decoded = delegate.decode(response, type);
+        MethodMetadata methodMetadata = response.request().requestTemplate() == null ? null : response.request().requestTemplate().methodMetadata();
+        if (methodMetadata != null){
+            lastKnownGoodServiceContract.record(methodMetadata.template().path(), URI.create(response.request().url()).getPath(), decoded);
+        }
+        return decoded;
+    }
+}
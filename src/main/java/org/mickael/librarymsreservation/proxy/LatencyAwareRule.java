@@ -0,0 +1,172 @@
+package org.mickael.librarymsreservation.proxy;
+
+import com.netflix.client.config.IClientConfig;
+import com.netflix.config.ChainedDynamicProperty;
+import com.netflix.config.DynamicPropertyFactory;
+import com.netflix.loadbalancer.AbstractLoadBalancer;
+import com.netflix.loadbalancer.AbstractLoadBalancerRule;
+import com.netflix.loadbalancer.ILoadBalancer;
+import com.netflix.loadbalancer.LoadBalancerStats;
+import com.netflix.loadbalancer.Server;
+import com.netflix.loadbalancer.ServerStats;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Ribbon rule choosing the fastest, least loaded instance: of two random instances, the one without failure
+ * in the last second (a refused connection is fast), then with the lowest peak EWMA of its response times
+ * multiplied by its active requests + 1.
+ * The response times, the active requests and the failures come from the Ribbon statistics of each instance.
+ *
+ * An instance whose circuit is tripped (successive connection failures or timeouts,
+ * niws.loadbalancer.&lt;client&gt;.connectionFailureCountThreshold) is ejected, but never more than
+ * [&lt;client&gt;.]ribbon.MaxEjectionPercent of the instances.
+ * A response time not refreshed during [&lt;client&gt;.]ribbon.LatencyDecayTime (ms) is forgotten,
+ * a slow instance is tried again.
+ */
+public class LatencyAwareRule extends AbstractLoadBalancerRule {
+
+    private static final int DEFAULT_DECAY_TIME = 10000;
+    private static final int DEFAULT_MAX_EJECTION_PERCENT = 50;
+
+    private final Map<Server, Latency> latencies = new ConcurrentHashMap<>();
+    private ChainedDynamicProperty.IntProperty decayTime = new ChainedDynamicProperty.IntProperty(
+            DynamicPropertyFactory.getInstance().getIntProperty("ribbon.LatencyDecayTime", DEFAULT_DECAY_TIME));
+    private ChainedDynamicProperty.IntProperty maxEjectionPercent = new ChainedDynamicProperty.IntProperty(
+            DynamicPropertyFactory.getInstance().getIntProperty("ribbon.MaxEjectionPercent", DEFAULT_MAX_EJECTION_PERCENT));
+
+    @Override
+    public void initWithNiwsConfig(IClientConfig clientConfig) {
+        String prefix = clientConfig.getClientName() + "." + clientConfig.getNameSpace() + ".";
+        decayTime = new ChainedDynamicProperty.IntProperty(prefix + "LatencyDecayTime",
+                DynamicPropertyFactory.getInstance().getIntProperty("ribbon.LatencyDecayTime", DEFAULT_DECAY_TIME));
+        maxEjectionPercent = new ChainedDynamicProperty.IntProperty(prefix + "MaxEjectionPercent",
+                DynamicPropertyFactory.getInstance().getIntProperty("ribbon.MaxEjectionPercent", DEFAULT_MAX_EJECTION_PERCENT));
+    }
+
+    @Override
+    public Server choose(Object key) {
+        ILoadBalancer loadBalancer = getLoadBalancer();
+        if (loadBalancer == null){
+            return null;
+        }
+        List<Server> servers = loadBalancer.getReachableServers();
+        if (servers.isEmpty()){
+            return null;
+        }
+        if (servers.size() == 1 || !(loadBalancer instanceof AbstractLoadBalancer)){
+            return servers.get(ThreadLocalRandom.current().nextInt(servers.size()));
+        }
+        LoadBalancerStats loadBalancerStats = ((AbstractLoadBalancer) loadBalancer).getLoadBalancerStats();
+        if (latencies.size() > loadBalancer.getAllServers().size()){
+            latencies.keySet().retainAll(loadBalancer.getAllServers());
+        }
+
+        long now = System.currentTimeMillis();
+        List<Candidate> candidates = new ArrayList<>(servers.size());
+        double latencySum = 0;
+        int sampled = 0;
+        for (Server server : servers) {
+            ServerStats serverStats = loadBalancerStats.getSingleServerStat(server);
+            double latency = latencies.computeIfAbsent(server, s -> new Latency()).update(serverStats, now, decayTime.get().intValue());
+            if (latency >= 0){
+                latencySum += latency;
+                sampled++;
+            }
+            candidates.add(new Candidate(server, serverStats, latency));
+        }
+        eject(candidates);
+
+        // an instance without recent response time is as fast as the others
+        double unknownLatency = sampled == 0 ? 0 : latencySum / sampled;
+        int size = candidates.size();
+        if (size == 1){
+            return candidates.get(0).server;
+        }
+        int first = ThreadLocalRandom.current().nextInt(size);
+        int second = (first + 1 + ThreadLocalRandom.current().nextInt(size - 1)) % size;
+        Candidate firstCandidate = candidates.get(first);
+        Candidate secondCandidate = candidates.get(second);
+        if (firstCandidate.failing != secondCandidate.failing){
+            return firstCandidate.failing ? secondCandidate.server : firstCandidate.server;
+        }
+        return firstCandidate.score(unknownLatency) <= secondCandidate.score(unknownLatency) ? firstCandidate.server : secondCandidate.server;
+    }
+
+    private void eject(List<Candidate> candidates) {
+        int maxEjected = candidates.size() * maxEjectionPercent.get().intValue() / 100;
+        if (maxEjected == 0){
+            return;
+        }
+        List<Candidate> tripped = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            if (candidate.serverStats.isCircuitBreakerTripped()){
+                tripped.add(candidate);
+            }
+        }
+        // the instances failing for the longest go first
+        tripped.sort(Comparator.comparingInt((Candidate candidate) -> candidate.serverStats.getSuccessiveConnectionFailureCount()).reversed());
+        candidates.removeAll(tripped.subList(0, Math.min(maxEjected, tripped.size())));
+    }
+
+    private static final class Candidate {
+
+        private final Server server;
+        private final ServerStats serverStats;
+        private final double latency;
+        private final boolean failing;
+
+        private Candidate(Server server, ServerStats serverStats, double latency) {
+            this.server = server;
+            this.serverStats = serverStats;
+            this.latency = latency;
+            // failures in the sliding window of the statistics, the last second
+            this.failing = serverStats.getFailureCount() > 0;
+        }
+
+        private double score(double unknownLatency) {
+            return ((latency < 0 ? unknownLatency : latency) + 1) * (serverStats.getActiveRequestsCount() + 1);
+        }
+    }
+
+    /**
+     * Peak EWMA of the response times of an instance, computed from the requests completed since the last update:
+     * a slower response time is taken at once, a faster one is reached over the decay time.
+     */
+    private static final class Latency {
+
+        private long requests;
+        private double responseTimeSum;
+        private double ewma = -1;
+        private long updatedAt;
+
+        private synchronized double update(ServerStats serverStats, long now, int decayTime) {
+            long totalRequests = serverStats.getTotalRequestsCount();
+            double totalResponseTime = serverStats.getResponseTimeAvg() * totalRequests;
+            if (totalRequests < requests){
+                // the statistics were reset
+                requests = 0;
+                responseTimeSum = 0;
+            }
+            if (totalRequests > requests){
+                double recent = Math.max(0, (totalResponseTime - responseTimeSum) / (totalRequests - requests));
+                if (ewma < 0 || recent > ewma){
+                    ewma = recent;
+                } else {
+                    ewma += (1 - Math.exp(-(now - updatedAt) / (double) decayTime)) * (recent - ewma);
+                }
+                requests = totalRequests;
+                responseTimeSum = totalResponseTime;
+                updatedAt = now;
+            } else if (ewma >= 0 && now - updatedAt > decayTime){
+                ewma = -1;
+            }
+            return ewma;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package org.mickael.librarymsreservation.repository;
+
+import org.mickael.librarymsreservation.model.MailOutbox;
+import org.mickael.librarymsreservation.model.MailStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface MailOutboxRepository extends JpaRepository<MailOutbox, Integer> {
+
+    //lock timeout -2 is "skip locked": several instances can drain the outbox without sending a mail twice
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2"))
+    @Query("select mail from MailOutbox mail where (mail.status = :status) " +
+                   "and (mail.nextAttemptDate <= :now) order by mail.id")
+    List<MailOutbox> findMailsToSend(@Param("status") MailStatus status, @Param("now") LocalDateTime now, Pageable pageable);
+
+}
@@ -0,0 +1,152 @@
+package org.mickael.librarymsreservation.repository;
+
+import org.mickael.librarymsreservation.model.Reservation;
+import org.mickael.librarymsreservation.utils.HandlerTransaction;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManagerFactory;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Set-based updates of the reservation table done with plain JDBC.
+ * The statements join the current transaction but bypass the persistence context:
+ * entities already loaded for the same rows are stale afterwards.
+ * The updated reservations are evicted from the second-level cache.
+ */
+@Repository
+public class ReservationJdbcRepository {
+
+    private static final String UPDATE_DATES_SQL = "update reservation set soon_disponibility_date = ?, "
+                                                           + "end_of_priority = coalesce(?, end_of_priority), version = version + 1 where reservation_id = ?";
+
+    //position in the queue of the book when the queue is ordered by creation date
+    private static final String QUEUE_POSITIONS_SQL = "select reservation_id, row_number() over "
+                                                              + "(partition by book_id order by create_reservation_date, reservation_id) as queue_position "
+                                                              + "from reservation where book_id in (:bookIds)";
+
+    //the row of the book is locked until the end of the transaction: concurrent reservations of the book
+    //wait for it, the other books are not blocked
+    private static final String ALLOCATE_POSITIONS_SQL = "insert into reservation_queue_head (book_id, last_position) values (?, ?) "
+                                                                 + "on conflict (book_id) do update set last_position = reservation_queue_head.last_position + excluded.last_position "
+                                                                 + "returning last_position";
+
+    private static final String RELEASE_POSITION_SQL = "update reservation_queue_head set last_position = last_position - 1 "
+                                                               + "where book_id = ? and last_position > 0";
+
+    //semi-join of the pairs, given as two arrays, on the (customer_id, book_id) index
+    private static final String EXISTING_PAIRS_SQL = "select pair.ordinality from unnest(?, ?) with ordinality as pair(customer_id, book_id, ordinality) "
+                                                             + "where exists (select 1 from reservation "
+                                                             + "where reservation.customer_id = pair.customer_id and reservation.book_id = pair.book_id)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Without second-level cache, nothing is evicted: for the benchmarks using plain JDBC.
+     */
+    public ReservationJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this(jdbcTemplate, null);
+    }
+
+    @Autowired
+    public ReservationJdbcRepository(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    /**
+     * Take the next position in the queue of the book, the queue head keeps the number of reservations of the book.
+     * Must be called in the transaction inserting the reservation, a rollback gives the position back.
+     * @return the position of the new reservation
+     */
+    public Integer allocatePosition(Integer bookId) {
+        return allocatePositions(bookId, 1);
+    }
+
+    /**
+     * Take the next positions in the queue of the book, with a count of 0 only lock the queue head.
+     * @return the last position taken, the first one is the returned position - count + 1
+     */
+    public Integer allocatePositions(Integer bookId, int count) {
+        return jdbcTemplate.queryForObject(ALLOCATE_POSITIONS_SQL, Integer.class, bookId, count);
+    }
+
+    /**
+     * Give back a position when a reservation of the book is deleted.
+     */
+    public void releasePosition(Integer bookId) {
+        jdbcTemplate.update(RELEASE_POSITION_SQL, bookId);
+    }
+
+    /**
+     * Check in one query which (customer id, book id) pairs have a reservation.
+     * @return the indexes, from 0, of the pairs having a reservation
+     */
+    public List<Integer> findExistingPairs(Integer[] customerIds, Integer[] bookIds) {
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(EXISTING_PAIRS_SQL);
+            ps.setArray(1, connection.createArrayOf("integer", customerIds));
+            ps.setArray(2, connection.createArrayOf("integer", bookIds));
+            return ps;
+        }, (rs, rowNum) -> rs.getInt(1) - 1);
+    }
+
+    /**
+     * Compute the positions from the creation dates, for every reservation of the books.
+     * @return the position of each reservation, by reservation id
+     */
+    public Map<Integer, Integer> findQueuePositions(Collection<Integer> bookIds) {
+        Map<Integer, Integer> positions = new HashMap<>();
+        namedParameterJdbcTemplate.query(QUEUE_POSITIONS_SQL, new MapSqlParameterSource("bookIds", bookIds),
+                rs -> {
+                    positions.put(rs.getInt("reservation_id"), rs.getInt("queue_position"));
+                });
+        return positions;
+    }
+
+    /**
+     * Update the dates of the reservations in one JDBC batch.
+     * @param endOfPriorities may be null to keep the current end of priority of every reservation
+     */
+    public int[] updateDates(List<Integer> reservationIds, List<LocalDate> soonDisponibilityDates, List<LocalDate> endOfPriorities) {
+        //evicted before, and again after the commit in case another transaction cached the old rows meanwhile,
+        //as Hibernate does for its own bulk updates. The queries cached by book or customer keep the same ids.
+        evictFromSecondLevelCache(reservationIds);
+        HandlerTransaction.afterCommit(() -> evictFromSecondLevelCache(reservationIds));
+        return jdbcTemplate.batchUpdate(UPDATE_DATES_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setDate(1, Date.valueOf(soonDisponibilityDates.get(i)));
+                ps.setDate(2, endOfPriorities == null ? null : Date.valueOf(endOfPriorities.get(i)));
+                ps.setInt(3, reservationIds.get(i));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return reservationIds.size();
+            }
+        });
+    }
+
+    private void evictFromSecondLevelCache(List<Integer> reservationIds) {
+        if (entityManagerFactory == null){
+            return;
+        }
+        reservationIds.forEach(reservationId -> entityManagerFactory.getCache().evict(Reservation.class, reservationId));
+    }
+
+}
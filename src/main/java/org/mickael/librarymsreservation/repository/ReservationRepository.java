@@ -1,23 +1,59 @@
 package org.mickael.librarymsreservation.repository;
 
 import org.mickael.librarymsreservation.model.Reservation;
+import org.mickael.librarymsreservation.model.ReservationKey;
+import org.mickael.librarymsreservation.model.ReservationSchedule;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_CACHE_MODE;
+import static org.hibernate.jpa.QueryHints.HINT_CACHE_REGION;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
-public interface ReservationRepository extends JpaRepository<Reservation, Integer> {
+public interface ReservationRepository extends JpaRepository<Reservation, Integer>, ReservationRepositoryCustom {
 
+    //ids of the results kept in the query cache (region in application.conf), dropped by any write on the table through Hibernate
+    @QueryHints({@QueryHint(name = HINT_CACHEABLE, value = "true"), @QueryHint(name = HINT_CACHE_REGION, value = "reservation-queries")})
     List<Reservation> findAllByCustomerId(Integer customerId);
 
+    @QueryHints({@QueryHint(name = HINT_CACHEABLE, value = "true"), @QueryHint(name = HINT_CACHE_REGION, value = "reservation-queries")})
     List<Reservation> findAllByBookId(Integer bookId);
 
     Optional<Reservation> findById(Integer reservationId);
 
+    //the write paths read the rows from the database, not from the second-level or query cache (which other
+    //instances do not invalidate), and lock them until the commit
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = HINT_CACHE_MODE, value = "REFRESH"))
+    @Query("select reservation from Reservation reservation where reservation.id = :reservationId")
+    Optional<Reservation> findByIdForUpdate(@Param("reservationId") Integer reservationId);
+
+    //locked in id order, as any other transaction locking several reservations of the book
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = HINT_CACHE_MODE, value = "REFRESH"))
+    @Query("select reservation from Reservation reservation where reservation.bookId = :bookId order by reservation.id")
+    List<Reservation> findAllByBookIdForUpdate(@Param("bookId") Integer bookId);
+
+    @QueryHints(@QueryHint(name = HINT_CACHE_MODE, value = "REFRESH"))
+    @Query("select reservation from Reservation reservation where reservation.id in :reservationIds")
+    List<Reservation> findAllByIdFromDatabase(@Param("reservationIds") Collection<Integer> reservationIds);
+
     Reservation findByCustomerId(Integer customerId);
 
     @Query("select case when count (reservation) > 0 then true else false end " +
@@ -27,6 +63,78 @@ public interface ReservationRepository extends JpaRepository<Reservation, Intege
 
     Reservation findByCustomerIdAndBookId(Integer customerId, Integer bookId);
 
+    List<Reservation> findAllByBookIdIn(Collection<Integer> bookIds);
+
+    List<Reservation> findAllByCustomerIdIn(Collection<Integer> customerIds);
+
+    //end of priority of the last reservation of the queue
+    @Query("select max(reservation.endOfPriority) from Reservation reservation where reservation.bookId = :bookId")
+    LocalDate findLastEndOfPriority(@Param("bookId") Integer bookId);
+
+    //pending changes are flushed before and the persistence context is cleared after the bulk update
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Reservation reservation set reservation.position = reservation.position - 1, reservation.version = reservation.version + 1 " +
+                   "where reservation.bookId = :bookId and reservation.position > :position")
+    int shiftPositionsAfter(@Param("bookId") Integer bookId, @Param("position") Integer position);
+
+    @Query("select reservation.id from Reservation reservation where reservation.bookId = :bookId order by reservation.position")
+    List<Integer> findIdsByBookIdOrderByPosition(@Param("bookId") Integer bookId);
+
+    @Query("select reservation.id from Reservation reservation where reservation.bookId = :bookId " +
+                   "order by reservation.creationReservationDate, reservation.id")
+    List<Integer> findIdsByBookIdOrderByCreation(@Param("bookId") Integer bookId);
+
+    //must be consumed in a transaction, the rows are fetched by groups of fetch size
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "1000"), @QueryHint(name = HINT_READONLY, value = "true"), @QueryHint(name = HINT_CACHE_MODE, value = "IGNORE")})
+    @Query("select reservation from Reservation reservation order by reservation.id")
+    Stream<Reservation> streamAll();
+
+    //must be consumed in a transaction, the rows are fetched by groups of fetch size
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "5000"), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("select new org.mickael.librarymsreservation.model.ReservationKey(reservation.customerId, reservation.bookId) from Reservation reservation")
+    Stream<ReservationKey> streamAllKeys();
+
+    //must be consumed in a transaction, the queue of each book is read in order
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "1000"), @QueryHint(name = HINT_READONLY, value = "true"), @QueryHint(name = HINT_CACHE_MODE, value = "IGNORE")})
+    @Query("select reservation from Reservation reservation order by reservation.bookId, reservation.position, reservation.id")
+    Stream<Reservation> streamAllOrderByBookIdAndPosition();
+
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "1000"), @QueryHint(name = HINT_READONLY, value = "true"), @QueryHint(name = HINT_CACHE_MODE, value = "IGNORE")})
+    @Query("select reservation from Reservation reservation order by reservation.bookId, reservation.creationReservationDate, reservation.id")
+    Stream<Reservation> streamAllOrderByBookIdAndCreation();
+
+    //same as streamAll but the position is computed from the creation dates
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "1000"), @QueryHint(name = HINT_READONLY, value = "true"), @QueryHint(name = HINT_CACHE_MODE, value = "IGNORE")})
+    @Query(value = "select reservation_id, create_reservation_date, soon_disponibility_date, end_of_priority, customer_id, " +
+                           "customer_email, customer_firstname, customer_lastname, book_id, book_title, notified_date, notified_end_of_priority, version, " +
+                           "row_number() over (partition by book_id order by create_reservation_date, reservation_id) as position " +
+                           "from reservation order by reservation_id", nativeQuery = true)
+    Stream<Reservation> streamAllWithQueuePosition();
+
+    //must be consumed in a transaction, the rows are fetched by groups of fetch size
+    //a reservation already notified for its current end of priority is not notified again
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READONLY, value = "true"), @QueryHint(name = HINT_CACHE_MODE, value = "IGNORE")})
+    @Query("select reservation from Reservation reservation " +
+                   "where (reservation.soonDisponibilityDate = :soonDisponibilityDate) " +
+                   "and (reservation.notifiedEndOfPriority is null or reservation.notifiedEndOfPriority <> reservation.endOfPriority) " +
+                   "order by reservation.id")
+    Stream<Reservation> streamNotificationsToSend(@Param("soonDisponibilityDate") LocalDate soonDisponibilityDate);
+
+    @Query("select count(reservation) from Reservation reservation " +
+                   "where (reservation.soonDisponibilityDate = :soonDisponibilityDate) " +
+                   "and (reservation.notifiedEndOfPriority = reservation.endOfPriority)")
+    long countAlreadyNotified(@Param("soonDisponibilityDate") LocalDate soonDisponibilityDate);
+
+    @Modifying
+    @Query("update Reservation reservation set reservation.notifiedDate = :notifiedDate, " +
+                   "reservation.notifiedEndOfPriority = reservation.endOfPriority, reservation.version = reservation.version + 1 where reservation.id in :reservationIds")
+    int markNotified(@Param("reservationIds") List<Integer> reservationIds, @Param("notifiedDate") LocalDate notifiedDate);
+
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("select reservation.id as id, reservation.soonDisponibilityDate as soonDisponibilityDate " +
+                   "from Reservation reservation where reservation.soonDisponibilityDate >= :from")
+    Stream<ReservationSchedule> streamAllBySoonDisponibilityDateGreaterThanEqual(@Param("from") LocalDate from);
+
 
 
 }
@@ -0,0 +1,13 @@
+package org.mickael.librarymsreservation.repository;
+
+import org.mickael.librarymsreservation.model.Reservation;
+import org.mickael.librarymsreservation.model.ReservationFilter;
+
+import java.util.List;
+
+public interface ReservationRepositoryCustom {
+
+    List<Reservation> findPage(Integer afterId, int limit, ReservationFilter reservationFilter);
+    long countByFilter(ReservationFilter reservationFilter);
+
+}
@@ -0,0 +1,77 @@
+package org.mickael.librarymsreservation.repository;
+
+import org.mickael.librarymsreservation.model.Reservation;
+import org.mickael.librarymsreservation.model.ReservationFilter;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ReservationRepositoryImpl implements ReservationRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * This method read the reservations following the given id (keyset pagination):
+     * the cost does not depend on the position of the page in the table.
+     * @param afterId the id of the last reservation of the previous page, null for the first page
+     * @param limit the maximum number of reservations
+     * @param reservationFilter the optional filters
+     * @return the reservations ordered by id
+     */
+    @Override
+    public List<Reservation> findPage(Integer afterId, int limit, ReservationFilter reservationFilter) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Reservation> query = criteriaBuilder.createQuery(Reservation.class);
+        Root<Reservation> reservation = query.from(Reservation.class);
+
+        List<Predicate> predicates = filter(criteriaBuilder, reservation, reservationFilter);
+        if (afterId != null){
+            predicates.add(criteriaBuilder.greaterThan(reservation.get("id"), afterId));
+        }
+        query.select(reservation)
+             .where(predicates.toArray(new Predicate[0]))
+             .orderBy(criteriaBuilder.asc(reservation.get("id")));
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    /**
+     * @param reservationFilter the optional filters
+     * @return the number of reservations matching the filters, all the pages
+     */
+    @Override
+    public long countByFilter(ReservationFilter reservationFilter) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = criteriaBuilder.createQuery(Long.class);
+        Root<Reservation> reservation = query.from(Reservation.class);
+
+        query.select(criteriaBuilder.count(reservation))
+             .where(filter(criteriaBuilder, reservation, reservationFilter).toArray(new Predicate[0]));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    private List<Predicate> filter(CriteriaBuilder criteriaBuilder, Root<Reservation> reservation, ReservationFilter reservationFilter) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (reservationFilter.getBookId() != null){
+            predicates.add(criteriaBuilder.equal(reservation.get("bookId"), reservationFilter.getBookId()));
+        }
+        if (reservationFilter.getCustomerId() != null){
+            predicates.add(criteriaBuilder.equal(reservation.get("customerId"), reservationFilter.getCustomerId()));
+        }
+        if (reservationFilter.getFrom() != null){
+            predicates.add(criteriaBuilder.greaterThanOrEqualTo(reservation.get("creationReservationDate"),
+                    reservationFilter.getFrom().atStartOfDay()));
+        }
+        if (reservationFilter.getTo() != null){
+            predicates.add(criteriaBuilder.lessThan(reservation.get("creationReservationDate"),
+                    reservationFilter.getTo().plusDays(1).atStartOfDay()));
+        }
+        return predicates;
+    }
+}
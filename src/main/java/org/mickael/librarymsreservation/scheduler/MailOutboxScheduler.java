@@ -0,0 +1,47 @@
+package org.mickael.librarymsreservation.scheduler;
+
+import org.mickael.librarymsreservation.service.contract.MailOutboxServiceContract;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+
+@Component
+@ConditionalOnProperty(name = "reservation.mail.outbox.enabled", havingValue = "true", matchIfMissing = true)
+public class MailOutboxScheduler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MailOutboxScheduler.class);
+
+    private final MailOutboxServiceContract mailOutboxServiceContract;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+
+    @Autowired
+    public MailOutboxScheduler(MailOutboxServiceContract mailOutboxServiceContract,
+                               @Value("${reservation.mail.outbox.batch-size:50}") int batchSize,
+                               @Value("${reservation.mail.outbox.max-batches-per-run:20}") int maxBatchesPerRun) {
+        this.mailOutboxServiceContract = mailOutboxServiceContract;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+    }
+
+    @Scheduled(fixedDelayString = "${reservation.mail.outbox.poll-delay:5000}")
+    public void drainOutbox(){
+        try {
+            //a full batch means there may be more mails waiting
+            int batches = 0;
+            int processed;
+            do {
+                processed = mailOutboxServiceContract.dispatchPendingMails();
+                batches++;
+            } while (processed == batchSize && batches < maxBatchesPerRun);
+        } catch (DataAccessException | TransactionException ex) {
+            LOGGER.warn("Unable to read the mail outbox: {}", ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.mickael.librarymsreservation.scheduler;
+
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Upcoming availability notifications, ordered by date.
+ * Taking the due notifications only touches the head of the queue, whatever the number of reservations.
+ */
+@Component
+public class NotificationQueue {
+
+    private final TreeMap<LocalDate, Set<Integer>> reservationsByDate = new TreeMap<>();
+    private final Map<Integer, LocalDate> dateByReservation = new HashMap<>();
+    //reservations changed while the queue is rebuilt from the database, null when no rebuild is running
+    private Set<Integer> changedDuringRebuild;
+
+    /**
+     * This method plan (or move) the notification of a reservation.
+     * @param reservationId the id of the reservation
+     * @param soonDisponibilityDate the day the book will be available for the customer
+     */
+    public synchronized void schedule(Integer reservationId, LocalDate soonDisponibilityDate){
+        cancel(reservationId);
+        if (soonDisponibilityDate != null){
+            add(reservationId, soonDisponibilityDate);
+        }
+    }
+
+    public synchronized void cancel(Integer reservationId){
+        if (changedDuringRebuild != null){
+            changedDuringRebuild.add(reservationId);
+        }
+        LocalDate previousDate = dateByReservation.remove(reservationId);
+        if (previousDate != null){
+            Set<Integer> reservationIds = reservationsByDate.get(previousDate);
+            reservationIds.remove(reservationId);
+            if (reservationIds.isEmpty()){
+                reservationsByDate.remove(previousDate);
+            }
+        }
+    }
+
+    /**
+     * This method remove and return the notifications due at the given day (or before).
+     * @param today the current day
+     * @return the ids of the reservations to notify
+     */
+    public synchronized List<Integer> pollDue(LocalDate today){
+        List<Integer> dueReservationIds = new ArrayList<>();
+        NavigableMap<LocalDate, Set<Integer>> dueDates = reservationsByDate.headMap(today, true);
+        for (Set<Integer> reservationIds : dueDates.values()){
+            dueReservationIds.addAll(reservationIds);
+        }
+        dueDates.clear();
+        dueReservationIds.forEach(dateByReservation::remove);
+        if (changedDuringRebuild != null){
+            changedDuringRebuild.addAll(dueReservationIds);
+        }
+        return dueReservationIds;
+    }
+
+    public synchronized boolean hasDue(LocalDate today){
+        return !reservationsByDate.isEmpty() && !reservationsByDate.firstKey().isAfter(today);
+    }
+
+    public synchronized int size(){
+        return dateByReservation.size();
+    }
+
+    /**
+     * This method start a rebuild: the changes made until {@link #completeRebuild(Map)}
+     * take precedence over the content read from the database.
+     */
+    public synchronized void beginRebuild(){
+        changedDuringRebuild = new HashSet<>();
+    }
+
+    /**
+     * This method replace the content of the queue by the one read from the database.
+     * @param schedules the notification date of each reservation
+     */
+    public synchronized void completeRebuild(Map<Integer, LocalDate> schedules){
+        Set<Integer> changedReservations = changedDuringRebuild == null ? new HashSet<>() : changedDuringRebuild;
+        Map<Integer, LocalDate> changedSchedules = new HashMap<>();
+        changedReservations.forEach(reservationId -> changedSchedules.put(reservationId, dateByReservation.get(reservationId)));
+
+        reservationsByDate.clear();
+        dateByReservation.clear();
+        schedules.forEach((reservationId, date) -> {
+            if (date != null && !changedReservations.contains(reservationId)){
+                add(reservationId, date);
+            }
+        });
+        changedSchedules.forEach((reservationId, date) -> {
+            if (date != null){
+                add(reservationId, date);
+            }
+        });
+        changedDuringRebuild = null;
+    }
+
+    public synchronized void abortRebuild(){
+        changedDuringRebuild = null;
+    }
+
+    private void add(Integer reservationId, LocalDate date){
+        reservationsByDate.computeIfAbsent(date, key -> new HashSet<>()).add(reservationId);
+        dateByReservation.put(reservationId, date);
+    }
+}
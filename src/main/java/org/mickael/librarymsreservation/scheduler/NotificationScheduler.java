@@ -0,0 +1,70 @@
+package org.mickael.librarymsreservation.scheduler;
+
+import org.mickael.librarymsreservation.model.NotificationReport;
+import org.mickael.librarymsreservation.service.contract.ReservationServiceContract;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+@Component
+@ConditionalOnProperty(name = "reservation.notification.enabled", havingValue = "true", matchIfMissing = true)
+public class NotificationScheduler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NotificationScheduler.class);
+
+    private final NotificationQueue notificationQueue;
+    private final ReservationServiceContract reservationServiceContract;
+
+    @Autowired
+    public NotificationScheduler(NotificationQueue notificationQueue, ReservationServiceContract reservationServiceContract) {
+        this.notificationQueue = notificationQueue;
+        this.reservationServiceContract = reservationServiceContract;
+    }
+
+    /**
+     * The queue is rebuilt from the database at startup, then every night
+     * to catch the changes made by other instances of the service.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${reservation.notification.rebuild-cron:0 30 0 * * *}")
+    public void rebuildQueue(){
+        notificationQueue.beginRebuild();
+        try {
+            Map<Integer, LocalDate> schedules = reservationServiceContract.findUpcomingNotifications(LocalDate.now());
+            notificationQueue.completeRebuild(schedules);
+            LOGGER.info("Notification queue rebuilt with {} reservations", notificationQueue.size());
+        } catch (DataAccessException | TransactionException ex) {
+            notificationQueue.abortRebuild();
+            LOGGER.warn("Unable to rebuild the notification queue: {}", ex.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${reservation.notification.poll-delay:60000}")
+    public void fireDueNotifications(){
+        LocalDate today = LocalDate.now();
+        if (!notificationQueue.hasDue(today)){
+            return;
+        }
+        List<Integer> reservationIds = notificationQueue.pollDue(today);
+        try {
+            NotificationReport notificationReport = reservationServiceContract.sendAvailabilityMails(reservationIds);
+            LOGGER.info("Availability notifications: {} sent, {} failed, {} skipped",
+                    notificationReport.getSent(), notificationReport.getFailed(), notificationReport.getSkipped());
+        } catch (DataAccessException | TransactionException ex) {
+            //keep them for the next run
+            reservationIds.forEach(reservationId -> notificationQueue.schedule(reservationId, today));
+            LOGGER.warn("Unable to send {} availability notifications: {}", reservationIds.size(), ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.mickael.librarymsreservation.scheduler;
+
+import org.mickael.librarymsreservation.service.contract.QueueViewServiceContract;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+
+@Component
+@ConditionalOnProperty(name = "reservation.queue-view.enabled", havingValue = "true", matchIfMissing = true)
+public class QueueViewScheduler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueueViewScheduler.class);
+
+    private final QueueViewServiceContract queueViewServiceContract;
+
+    @Autowired
+    public QueueViewScheduler(QueueViewServiceContract queueViewServiceContract) {
+        this.queueViewServiceContract = queueViewServiceContract;
+    }
+
+    /**
+     * The view is built from the database at startup, then rebuilt regularly
+     * to catch the changes made by other instances of the service.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${reservation.queue-view.reconcile-delay:600000}",
+               fixedDelayString = "${reservation.queue-view.reconcile-delay:600000}")
+    public void rebuildView(){
+        try {
+            int inconsistencies = queueViewServiceContract.rebuild();
+            if (inconsistencies > 0){
+                LOGGER.warn("Queue view rebuilt, {} book queue(s) were different from the database", inconsistencies);
+            } else {
+                LOGGER.info("Queue view rebuilt");
+            }
+        } catch (DataAccessException | TransactionException ex) {
+            LOGGER.warn("Unable to rebuild the queue view: {}", ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.mickael.librarymsreservation.scheduler;
+
+import org.mickael.librarymsreservation.service.contract.ReservationPairIndexServiceContract;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+
+@Component
+@ConditionalOnProperty(name = "reservation.pair-index.enabled", havingValue = "true", matchIfMissing = true)
+public class ReservationPairIndexScheduler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReservationPairIndexScheduler.class);
+
+    private final ReservationPairIndexServiceContract reservationPairIndexServiceContract;
+
+    @Autowired
+    public ReservationPairIndexScheduler(ReservationPairIndexServiceContract reservationPairIndexServiceContract) {
+        this.reservationPairIndexServiceContract = reservationPairIndexServiceContract;
+    }
+
+    /**
+     * The index is built from the database at startup, then rebuilt regularly
+     * to catch the changes made by other instances of the service.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${reservation.pair-index.reconcile-delay:600000}",
+               fixedDelayString = "${reservation.pair-index.reconcile-delay:600000}")
+    public void rebuildIndex(){
+        try {
+            reservationPairIndexServiceContract.rebuild();
+            LOGGER.info("Reservation pair index rebuilt");
+        } catch (DataAccessException | TransactionException ex) {
+            LOGGER.warn("Unable to rebuild the reservation pair index: {}", ex.getMessage());
+        }
+    }
+}
@@ -1,6 +1,11 @@
 package org.mickael.librarymsreservation.security;
 
 import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -17,12 +22,21 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
 
 
 public class JwtAuthorizationFilter extends BasicAuthenticationFilter {
 
+    // the verifier is thread-safe, build it once
+    private static final JWTVerifier JWT_VERIFIER = JWT.require(HMAC512(JwtProperties.SECRET.getBytes())).build();
+
+    // authentication of the tokens already verified, kept until the expiration of the token
+    private final Cache<String, CachedAuthentication> authenticationCache = Caffeine.newBuilder()
+                                                                                      .maximumSize(JwtProperties.TOKEN_CACHE_MAXIMUM_SIZE)
+                                                                                      .expireAfter(new TokenExpiry())
+                                                                                      .build();
 
     public JwtAuthorizationFilter(AuthenticationManager authenticationManager) {
         super(authenticationManager);
@@ -53,31 +67,68 @@ public class JwtAuthorizationFilter extends BasicAuthenticationFilter {
         String token = request.getHeader(JwtProperties.HEADER_STRING)
                                .replace(JwtProperties.TOKEN_PREFIX,"");
 
-        if (token != null) {
-            // parse the token and validate it
-            String username = JWT.require(HMAC512(JwtProperties.SECRET.getBytes()))
-                                      .build()
-                                      .verify(token)
-                                      .getSubject();
-
-            // Search in the DB if we find the user by token subject (username)
-            // If so, then grab user details and create spring auth token using username, pass, authorities/roles
-            if (username != null) {
-                String authoritiesJwt = JWT.require(HMAC512(JwtProperties.SECRET.getBytes()))
-                                                   .build()
-                                                   .verify(token)
-                                            .getClaim("authorities").toString();
-                List<String> authoritiesList = Arrays.asList(authoritiesJwt.split(","));
-                List<GrantedAuthority> authorities = new ArrayList<>();
-                authoritiesList.forEach(p -> {
-                    GrantedAuthority authority = new SimpleGrantedAuthority(p);
-                    authorities.add(authority);
-                });
-
-                return new UsernamePasswordAuthenticationToken(username, null, authorities);
-            }
-            return null;
+        CachedAuthentication cachedAuthentication = authenticationCache.getIfPresent(token);
+        if (cachedAuthentication != null) {
+            return cachedAuthentication.authentication;
+        }
+
+        // parse the token and validate it, only once
+        DecodedJWT decodedJWT = JWT_VERIFIER.verify(token);
+        String username = decodedJWT.getSubject();
+
+        // Search in the DB if we find the user by token subject (username)
+        // If so, then grab user details and create spring auth token using username, pass, authorities/roles
+        if (username != null) {
+            String authoritiesJwt = decodedJWT.getClaim("authorities").toString();
+            List<String> authoritiesList = Arrays.asList(authoritiesJwt.split(","));
+            List<GrantedAuthority> authorities = new ArrayList<>();
+            authoritiesList.forEach(p -> {
+                GrantedAuthority authority = new SimpleGrantedAuthority(p);
+                authorities.add(authority);
+            });
+
+            Authentication authentication = new UsernamePasswordAuthenticationToken(username, null, authorities);
+            authenticationCache.put(token, new CachedAuthentication(authentication,
+                    decodedJWT.getExpiresAt() == null ? null : decodedJWT.getExpiresAt().getTime()));
+            return authentication;
         }
         return null;
     }
+
+    private static final class CachedAuthentication {
+
+        private final Authentication authentication;
+        private final Long expiresAtMillis;
+
+        private CachedAuthentication(Authentication authentication, Long expiresAtMillis) {
+            this.authentication = authentication;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    /**
+     * An entry expires with its token (and at most after TOKEN_CACHE_MAXIMUM_DURATION).
+     */
+    private static final class TokenExpiry implements Expiry<String, CachedAuthentication> {
+
+        @Override
+        public long expireAfterCreate(String token, CachedAuthentication cachedAuthentication, long currentTime) {
+            long maximumDuration = TimeUnit.MILLISECONDS.toNanos(JwtProperties.TOKEN_CACHE_MAXIMUM_DURATION);
+            if (cachedAuthentication.expiresAtMillis == null) {
+                return maximumDuration;
+            }
+            long remaining = TimeUnit.MILLISECONDS.toNanos(cachedAuthentication.expiresAtMillis - System.currentTimeMillis());
+            return Math.max(0, Math.min(remaining, maximumDuration));
+        }
+
+        @Override
+        public long expireAfterUpdate(String token, CachedAuthentication cachedAuthentication, long currentTime, long currentDuration) {
+            return expireAfterCreate(token, cachedAuthentication, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String token, CachedAuthentication cachedAuthentication, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
 }
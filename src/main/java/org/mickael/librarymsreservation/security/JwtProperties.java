@@ -5,4 +5,6 @@ public class JwtProperties {
     public static final long EXPIRATION_TIME = 864_000_000; // 10 days
     public static final String TOKEN_PREFIX = "Bearer ";
     public static final String HEADER_STRING = "Authorization";
+    public static final long TOKEN_CACHE_MAXIMUM_SIZE = 10_000;
+    public static final long TOKEN_CACHE_MAXIMUM_DURATION = 3_600_000; // 1 hour, for the tokens without expiration
 }
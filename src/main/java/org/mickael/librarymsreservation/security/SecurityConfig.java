@@ -1,8 +1,10 @@
 package org.mickael.librarymsreservation.security;
 
 
+import org.mickael.librarymsreservation.controller.ReservationRestController;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
@@ -38,7 +40,11 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
     @Bean
     CorsConfigurationSource corsConfigurationSource() {
         final UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
-        source.registerCorsConfiguration("/**", new CorsConfiguration().applyPermitDefaultValues());
+        CorsConfiguration corsConfiguration = new CorsConfiguration().applyPermitDefaultValues();
+        corsConfiguration.addExposedHeader(ReservationRestController.NEXT_CURSOR_HEADER);
+        corsConfiguration.addExposedHeader(ReservationRestController.TOTAL_COUNT_HEADER);
+        corsConfiguration.addExposedHeader(HttpHeaders.LINK);
+        source.registerCorsConfiguration("/**", corsConfiguration);
         return source;
     }
 }
@@ -0,0 +1,12 @@
+package org.mickael.librarymsreservation.service.contract;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface CoalescingLookupServiceContract {
+
+    List<LocalDate> getSoonReturned(Integer bookId, String accessToken);
+
+    Integer numberOfCopyAvailableForBook(Integer bookId, String accessToken);
+
+}
@@ -0,0 +1,19 @@
+package org.mickael.librarymsreservation.service.contract;
+
+import org.mickael.librarymsreservation.model.Reservation;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+public interface CustomerReservationCacheServiceContract {
+
+    List<Reservation> get(Integer customerId, Function<Integer, List<Reservation>> loader);
+
+    void evictCustomersAfterCommit(Collection<Integer> customerIds);
+    void evictBookAfterCommit(Integer bookId);
+
+    Map<String, Number> getStatistics();
+
+}
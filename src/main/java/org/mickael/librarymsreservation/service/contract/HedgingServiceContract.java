@@ -0,0 +1,15 @@
+package org.mickael.librarymsreservation.service.contract;
+
+public interface HedgingServiceContract {
+
+    boolean isHedged(String clientName);
+
+    long onRequest(String clientName, String method);
+    void recordLatency(String method, long latencyNanos);
+
+    boolean acquireHedge(String clientName, String method);
+    void recordSent(String method);
+    void recordSaturated(String clientName, String method);
+    void recordWon(String method);
+
+}
@@ -0,0 +1,9 @@
+package org.mickael.librarymsreservation.service.contract;
+
+public interface LastKnownGoodServiceContract {
+
+    void record(String pathTemplate, String path, Object response);
+
+    <T> T find(String pathTemplate, Integer bookId);
+
+}
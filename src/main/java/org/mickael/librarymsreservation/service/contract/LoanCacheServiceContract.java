@@ -0,0 +1,16 @@
+package org.mickael.librarymsreservation.service.contract;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+public interface LoanCacheServiceContract {
+
+    List<LocalDate> getSoonReturned(Integer bookId, String accessToken);
+
+    void evict(Integer bookId);
+    void evictAll();
+
+    Map<String, Number> getStatistics();
+
+}
@@ -0,0 +1,12 @@
+package org.mickael.librarymsreservation.service.contract;
+
+import org.springframework.mail.SimpleMailMessage;
+
+import java.util.List;
+import java.util.Map;
+
+public interface MailBatchServiceContract {
+
+    Map<SimpleMailMessage, Exception> sendAll(List<SimpleMailMessage> mailMessages);
+
+}
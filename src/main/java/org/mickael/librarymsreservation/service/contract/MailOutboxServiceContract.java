@@ -0,0 +1,11 @@
+package org.mickael.librarymsreservation.service.contract;
+
+import org.springframework.mail.SimpleMailMessage;
+
+public interface MailOutboxServiceContract {
+
+    void enqueue(SimpleMailMessage mailMessage);
+
+    int dispatchPendingMails();
+
+}
@@ -0,0 +1,18 @@
+package org.mickael.librarymsreservation.service.contract;
+
+import org.mickael.librarymsreservation.model.Reservation;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface QueueViewServiceContract {
+
+    List<Reservation> findQueue(Integer bookId);
+
+    void insertAfterCommit(Reservation reservation);
+    void removeAfterCommit(Integer bookId, Integer reservationId);
+    void updateDatesAfterCommit(Integer bookId, List<Integer> reservationIds, List<LocalDate> soonDisponibilityDates, List<LocalDate> endOfPriorities);
+
+    int rebuild();
+
+}
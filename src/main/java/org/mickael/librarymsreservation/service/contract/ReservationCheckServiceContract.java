@@ -0,0 +1,14 @@
+package org.mickael.librarymsreservation.service.contract;
+
+import org.mickael.librarymsreservation.model.ReservationCheck;
+
+import java.util.Collection;
+import java.util.Map;
+
+public interface ReservationCheckServiceContract {
+
+    ReservationCheck checkReservation(Integer customerId, Integer bookId, String accessToken);
+    ReservationCheck checkBook(Integer bookId, String accessToken);
+    Map<Integer, ReservationCheck> checkBooks(Collection<Integer> bookIds, String accessToken);
+
+}
@@ -0,0 +1,12 @@
+package org.mickael.librarymsreservation.service.contract;
+
+import org.mickael.librarymsreservation.model.ExportFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface ReservationExportServiceContract {
+
+    long export(ExportFormat exportFormat, OutputStream outputStream) throws IOException;
+
+}
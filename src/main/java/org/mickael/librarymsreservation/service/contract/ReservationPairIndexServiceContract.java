@@ -0,0 +1,14 @@
+package org.mickael.librarymsreservation.service.contract;
+
+import java.util.function.BooleanSupplier;
+
+public interface ReservationPairIndexServiceContract {
+
+    boolean exists(Integer customerId, Integer bookId, BooleanSupplier databaseCheck);
+
+    void addAfterCommit(Integer customerId, Integer bookId);
+    void removeAfterCommit(Integer customerId, Integer bookId);
+
+    void rebuild();
+
+}
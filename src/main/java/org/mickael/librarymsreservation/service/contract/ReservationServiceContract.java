@@ -1,17 +1,30 @@
 package org.mickael.librarymsreservation.service.contract;
 
+import org.mickael.librarymsreservation.model.NotificationReport;
 import org.mickael.librarymsreservation.model.Reservation;
+import org.mickael.librarymsreservation.model.ReservationCheck;
+import org.mickael.librarymsreservation.model.ReservationFilter;
+import org.mickael.librarymsreservation.model.ReservationImportReport;
+import org.mickael.librarymsreservation.model.ReservationKey;
+import org.mickael.librarymsreservation.model.ReservationPage;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface ReservationServiceContract {
 
     List<Reservation> findAll();
+    ReservationPage findPage(String cursor, Integer size, ReservationFilter reservationFilter, boolean count);
     Reservation findById(Integer id);
     Reservation save(Reservation reservation, List<LocalDate> localDateList, Integer numberOfCopies, Integer copiesAvailable);
+    ReservationImportReport importReservations(List<Reservation> reservations, Map<Integer, ReservationCheck> reservationCheckByBookId);
 
-    void updateReservationsAndSendMail();
+    NotificationReport updateReservationsAndSendMail();
+
+    Map<Integer, LocalDate> findUpcomingNotifications(LocalDate from);
+    NotificationReport sendAvailabilityMails(List<Integer> reservationIds);
 
     void updateDateResaBookId(Integer bookId, List<LocalDate> listReturnLoanDate);
 
@@ -19,8 +32,11 @@ public interface ReservationServiceContract {
 
     List<Reservation> findAllByCustomerId(Integer customerId);
     List<Reservation> findAllByBookId(Integer bookId);
+    Map<Integer, List<Reservation>> findAllByCustomerIds(Collection<Integer> customerIds);
+    Map<Integer, List<Reservation>> findAllByBookIds(Collection<Integer> bookIds);
 
     boolean checkIfReservationExistForCustomerIdAndBookId(Integer customerId, Integer bookId);
+    boolean[] checkIfReservationsExist(List<ReservationKey> reservationKeys);
     Reservation findByCustomerIdAndBookId(Integer customerId, Integer bookId);
 
 
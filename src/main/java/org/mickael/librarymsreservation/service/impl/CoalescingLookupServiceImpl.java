@@ -0,0 +1,57 @@
+package org.mickael.librarymsreservation.service.impl;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.mickael.librarymsreservation.proxy.FeignBookProxy;
+import org.mickael.librarymsreservation.proxy.FeignLoanProxy;
+import org.mickael.librarymsreservation.service.contract.CoalescingLookupServiceContract;
+import org.mickael.librarymsreservation.utils.HandlerHystrix;
+import org.mickael.librarymsreservation.utils.HandlerToken;
+import org.mickael.librarymsreservation.utils.SingleFlight;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Service
+public class CoalescingLookupServiceImpl implements CoalescingLookupServiceContract {
+
+    private final FeignLoanProxy feignLoanProxy;
+    private final FeignBookProxy feignBookProxy;
+
+    //one in-flight call per book for each method, the concurrent callers share its result
+    private final SingleFlight<Integer, List<LocalDate>> soonReturnedCalls = new SingleFlight<>();
+    private final SingleFlight<Integer, Integer> copiesAvailableCalls = new SingleFlight<>();
+
+    @Autowired
+    public CoalescingLookupServiceImpl(FeignLoanProxy feignLoanProxy, FeignBookProxy feignBookProxy, MeterRegistry meterRegistry) {
+        this.feignLoanProxy = feignLoanProxy;
+        this.feignBookProxy = feignBookProxy;
+        registerMetrics(meterRegistry, "getSoonReturned", soonReturnedCalls);
+        registerMetrics(meterRegistry, "numberOfCopyAvailableForBook", copiesAvailableCalls);
+    }
+
+    @Override
+    public List<LocalDate> getSoonReturned(Integer bookId, String accessToken) {
+        return soonReturnedCalls.execute(bookId,
+                () -> HandlerHystrix.call(() -> feignLoanProxy.getSoonReturned(bookId, HandlerToken.formatToken(accessToken))));
+    }
+
+    @Override
+    public Integer numberOfCopyAvailableForBook(Integer bookId, String accessToken) {
+        return copiesAvailableCalls.execute(bookId,
+                () -> HandlerHystrix.call(() -> feignBookProxy.numberOfCopyAvailableForBook(bookId, HandlerToken.formatToken(accessToken))));
+    }
+
+    private void registerMetrics(MeterRegistry meterRegistry, String method, SingleFlight<?, ?> singleFlight){
+        FunctionCounter.builder("feign.lookup.executed", singleFlight, SingleFlight::getExecutedCalls)
+                       .description("Remote calls actually sent")
+                       .tag("method", method)
+                       .register(meterRegistry);
+        FunctionCounter.builder("feign.lookup.coalesced", singleFlight, SingleFlight::getCoalescedCalls)
+                       .description("Calls which shared the result of an identical in-flight call")
+                       .tag("method", method)
+                       .register(meterRegistry);
+    }
+}
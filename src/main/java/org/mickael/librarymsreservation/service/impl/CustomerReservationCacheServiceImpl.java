@@ -0,0 +1,164 @@
+package org.mickael.librarymsreservation.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.mickael.librarymsreservation.model.Reservation;
+import org.mickael.librarymsreservation.service.contract.CustomerReservationCacheServiceContract;
+import org.mickael.librarymsreservation.utils.HandlerTransaction;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * The reservations of each customer, as returned by ReservationServiceImpl.findAllByCustomerId.
+ * An entry holds positions and dates which change with the other reservations of the same books:
+ * the cached customers are indexed by book, to evict the customers of a book when its queue changes.
+ */
+@Service
+public class CustomerReservationCacheServiceImpl implements CustomerReservationCacheServiceContract {
+
+    private final Cache<Integer, List<Reservation>> reservationsByCustomer;
+    //customers cached with a reservation of the book
+    private final ConcurrentMap<Integer, Set<Integer>> cachedCustomerIdsByBookId = new ConcurrentHashMap<>();
+    //incremented by each eviction, a list read meanwhile may be stale
+    private final AtomicLong evictions = new AtomicLong();
+
+    private static final String CACHE_NAME = "customerReservations";
+
+    @Autowired
+    public CustomerReservationCacheServiceImpl(MeterRegistry meterRegistry,
+                                               @Value("${reservation.cache.customer.maximum-size:10000}") long maximumSize,
+                                               @Value("${reservation.cache.customer.time-to-live:10m}") Duration timeToLive) {
+        this.reservationsByCustomer = Caffeine.newBuilder()
+                                              .maximumSize(maximumSize)
+                                              .expireAfterWrite(timeToLive)
+                                              .removalListener(this::unindex)
+                                              .executor(Runnable::run)
+                                              .recordStats()
+                                              .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, reservationsByCustomer, CACHE_NAME);
+        Gauge.builder("reservation.cache.customer.memory", this, CustomerReservationCacheServiceImpl::memoryBytes)
+             .baseUnit("bytes").description("Estimated heap used by the cached reservations of the customers").register(meterRegistry);
+    }
+
+    /**
+     * @param loader reads the reservations of the customer when they are not cached
+     * @return the cached reservations, not to be modified
+     */
+    @Override
+    public List<Reservation> get(Integer customerId, Function<Integer, List<Reservation>> loader) {
+        List<Reservation> reservations = reservationsByCustomer.getIfPresent(customerId);
+        if (reservations != null){
+            return reservations;
+        }
+        long evictionsBeforeRead = evictions.get();
+        List<Reservation> copies = new ArrayList<>();
+        loader.apply(customerId).forEach(reservation -> copies.add(copyOf(reservation)));
+        reservations = Collections.unmodifiableList(copies);
+        reservationsByCustomer.put(customerId, reservations);
+        //indexed after the put: a removal of the previous entry does not unindex the new one
+        reservations.stream().map(Reservation::getBookId).filter(Objects::nonNull)
+                    .forEach(bookId -> cachedCustomerIdsByBookId.computeIfAbsent(bookId, id -> ConcurrentHashMap.newKeySet()).add(customerId));
+        //an eviction during the read may have missed this entry, which was not indexed yet
+        if (evictions.get() != evictionsBeforeRead){
+            reservationsByCustomer.invalidate(customerId);
+        }
+        return reservations;
+    }
+
+    /**
+     * A reservation of the customers is created or deleted, the other customers are not concerned.
+     */
+    @Override
+    public void evictCustomersAfterCommit(Collection<Integer> customerIds) {
+        HandlerTransaction.afterCommit(() -> {
+            evictions.incrementAndGet();
+            reservationsByCustomer.invalidateAll(customerIds);
+        });
+    }
+
+    /**
+     * The positions or dates of the queue of the book are changed, for all its customers.
+     */
+    @Override
+    public void evictBookAfterCommit(Integer bookId) {
+        HandlerTransaction.afterCommit(() -> {
+            evictions.incrementAndGet();
+            Set<Integer> customerIds = cachedCustomerIdsByBookId.remove(bookId);
+            if (customerIds != null){
+                reservationsByCustomer.invalidateAll(customerIds);
+            }
+        });
+    }
+
+    @Override
+    public Map<String, Number> getStatistics() {
+        CacheStats stats = reservationsByCustomer.stats();
+        Map<String, Number> statistics = new LinkedHashMap<>();
+        statistics.put("size", reservationsByCustomer.estimatedSize());
+        statistics.put("hitCount", stats.hitCount());
+        statistics.put("missCount", stats.missCount());
+        statistics.put("hitRate", stats.hitRate());
+        statistics.put("evictionCount", stats.evictionCount());
+        statistics.put("memoryBytes", memoryBytes());
+        return statistics;
+    }
+
+    public long memoryBytes(){
+        //list, then per reservation the object, its boxed numbers and dates, and its strings
+        return reservationsByCustomer.asMap().values().stream()
+                                     .mapToLong(reservations -> 56 + reservations.stream().mapToLong(reservation -> 200
+                                             + stringBytes(reservation.getCustomerEmail()) + stringBytes(reservation.getCustomerFirstname())
+                                             + stringBytes(reservation.getCustomerLastname()) + stringBytes(reservation.getBookTitle())).sum())
+                                     .sum();
+    }
+
+    private void unindex(Integer customerId, List<Reservation> reservations, RemovalCause removalCause){
+        if (customerId == null || reservations == null || removalCause == RemovalCause.REPLACED){
+            return;
+        }
+        reservations.stream().map(Reservation::getBookId).filter(Objects::nonNull).forEach(id -> cachedCustomerIdsByBookId.computeIfPresent(id, (bookId, customerIds) -> {
+            //the customer may have been read and cached again meanwhile
+            if (!hasReservationOfBook(reservationsByCustomer.asMap().get(customerId), bookId)){
+                customerIds.remove(customerId);
+            }
+            return customerIds.isEmpty() ? null : customerIds;
+        }));
+    }
+
+    private static boolean hasReservationOfBook(List<Reservation> reservations, Integer bookId){
+        return reservations != null && reservations.stream().anyMatch(reservation -> bookId.equals(reservation.getBookId()));
+    }
+
+    //the entities of the persistence context are not shared between requests
+    private static Reservation copyOf(Reservation reservation){
+        return new Reservation(reservation.getId(), reservation.getCreationReservationDate(), reservation.getSoonDisponibilityDate(),
+                reservation.getEndOfPriority(), reservation.getCustomerId(), reservation.getCustomerEmail(), reservation.getCustomerFirstname(),
+                reservation.getCustomerLastname(), reservation.getBookId(), reservation.getBookTitle(), reservation.getPosition(),
+                reservation.getNotifiedDate(), reservation.getNotifiedEndOfPriority(), reservation.getVersion());
+    }
+
+    private static long stringBytes(String value){
+        //String and char array headers, then 2 bytes per char
+        return value == null ? 0 : 40 + 2L * value.length();
+    }
+}
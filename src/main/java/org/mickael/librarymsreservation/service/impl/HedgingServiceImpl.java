@@ -0,0 +1,139 @@
+package org.mickael.librarymsreservation.service.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.mickael.librarymsreservation.service.contract.HedgingServiceContract;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Policy of the hedged requests (see HedgingClient): the GET calls of the clients listed in
+ * reservation.hedging.clients are duplicated when they last longer than a percentile of the recent
+ * response times of their method. The hedges of a client are capped by a budget: each request earns
+ * budget-percent hundredths of a hedge, up to budget-burst hedges.
+ */
+@Service
+public class HedgingServiceImpl implements HedgingServiceContract {
+
+    //recent response times kept by method, the delay is computed again every RECOMPUTE_EVERY responses
+    private static final int WINDOW = 512;
+    private static final int RECOMPUTE_EVERY = 64;
+    //budget in thousandths of a hedge
+    private static final long HEDGE_COST = 1000;
+
+    private final MeterRegistry meterRegistry;
+    private final Set<String> hedgedClients;
+    private final double percentile;
+    private final long minDelayNanos;
+    private final int minSamples;
+    private final long earnedByRequest;
+    private final long maxBudget;
+
+    private final ConcurrentMap<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> budgets = new ConcurrentHashMap<>();
+
+    @Autowired
+    public HedgingServiceImpl(MeterRegistry meterRegistry,
+                              @Value("${reservation.hedging.clients:}") String[] hedgedClients,
+                              @Value("${reservation.hedging.percentile:0.95}") double percentile,
+                              @Value("${reservation.hedging.min-delay:20ms}") Duration minDelay,
+                              @Value("${reservation.hedging.min-samples:100}") int minSamples,
+                              @Value("${reservation.hedging.budget-percent:5}") int budgetPercent,
+                              @Value("${reservation.hedging.budget-burst:10}") int budgetBurst) {
+        this.meterRegistry = meterRegistry;
+        this.hedgedClients = new HashSet<>(Arrays.asList(hedgedClients));
+        this.percentile = percentile;
+        this.minDelayNanos = minDelay.toNanos();
+        this.minSamples = Math.max(1, Math.min(minSamples, WINDOW));
+        this.earnedByRequest = budgetPercent * HEDGE_COST / 100;
+        this.maxBudget = budgetBurst * HEDGE_COST;
+    }
+
+    @Override
+    public boolean isHedged(String clientName) {
+        return hedgedClients.contains(clientName);
+    }
+
+    /**
+     * Count a request of the method in the budget of the client.
+     * @return the delay (ns) after which the request is hedged, -1 until the method has min-samples response times
+     */
+    @Override
+    public long onRequest(String clientName, String method) {
+        budget(clientName).updateAndGet(budget -> Math.min(maxBudget, budget + earnedByRequest));
+        LatencyWindow latencyWindow = latencies.get(method);
+        return latencyWindow == null ? -1 : latencyWindow.delay;
+    }
+
+    /**
+     * Called with the response time of each successful call of the method, hedge or not.
+     */
+    @Override
+    public void recordLatency(String method, long latencyNanos) {
+        latencies.computeIfAbsent(method, m -> new LatencyWindow()).record(latencyNanos);
+    }
+
+    /**
+     * @return true when the budget of the client allows a hedge, which is then spent
+     */
+    @Override
+    public boolean acquireHedge(String clientName, String method) {
+        AtomicLong budget = budget(clientName);
+        long current;
+        do {
+            current = budget.get();
+            if (current < HEDGE_COST){
+                meterRegistry.counter("feign.hedge.skipped", "method", method, "reason", "budget").increment();
+                return false;
+            }
+        } while (!budget.compareAndSet(current, current - HEDGE_COST));
+        return true;
+    }
+
+    @Override
+    public void recordSent(String method) {
+        meterRegistry.counter("feign.hedge.sent", "method", method).increment();
+    }
+
+    /**
+     * The hedge could not be sent, no thread was available: its budget is given back.
+     */
+    @Override
+    public void recordSaturated(String clientName, String method) {
+        budget(clientName).addAndGet(HEDGE_COST);
+        meterRegistry.counter("feign.hedge.skipped", "method", method, "reason", "saturated").increment();
+    }
+
+    @Override
+    public void recordWon(String method) {
+        meterRegistry.counter("feign.hedge.won", "method", method).increment();
+    }
+
+    private AtomicLong budget(String clientName) {
+        return budgets.computeIfAbsent(clientName, name -> new AtomicLong(maxBudget));
+    }
+
+    private final class LatencyWindow {
+
+        private final long[] samples = new long[WINDOW];
+        private long recorded;
+        private volatile long delay = -1;
+
+        private synchronized void record(long latencyNanos) {
+            samples[(int) (recorded++ % WINDOW)] = latencyNanos;
+            if (recorded == minSamples || (recorded > minSamples && recorded % RECOMPUTE_EVERY == 0)){
+                long[] sorted = Arrays.copyOf(samples, (int) Math.min(recorded, WINDOW));
+                Arrays.sort(sorted);
+                delay = Math.max(minDelayNanos, sorted[(int) Math.max(0, Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1))]);
+            }
+        }
+    }
+}
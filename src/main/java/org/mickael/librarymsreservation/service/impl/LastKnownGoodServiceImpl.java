@@ -0,0 +1,74 @@
+package org.mickael.librarymsreservation.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.mickael.librarymsreservation.proxy.FeignBookProxy;
+import org.mickael.librarymsreservation.proxy.FeignLoanProxy;
+import org.mickael.librarymsreservation.service.contract.LastKnownGoodServiceContract;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The last successful response of the other micro services, by request path, served by the fallbacks
+ * of the Feign proxies when a service fails or its circuit is open. Only the responses of the paths
+ * which can be stale for a while are kept, and for at most reservation.fallback.max-age.
+ */
+@Service
+public class LastKnownGoodServiceImpl implements LastKnownGoodServiceContract {
+
+    private static final Set<String> REMEMBERED_PATHS = new HashSet<>(Arrays.asList(
+            FeignLoanProxy.SOON_RETURNED_PATH, FeignBookProxy.COPIES_AVAILABLE_NUMBER_PATH, FeignBookProxy.COPIES_NUMBER_PATH));
+
+    private static final String CACHE_NAME = "lastKnownGood";
+
+    private final Cache<String, Object> responses;
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public LastKnownGoodServiceImpl(MeterRegistry meterRegistry,
+                                    @Value("${reservation.fallback.maximum-size:20000}") long maximumSize,
+                                    @Value("${reservation.fallback.max-age:1h}") Duration maxAge) {
+        this.meterRegistry = meterRegistry;
+        this.responses = Caffeine.newBuilder()
+                                 .maximumSize(maximumSize)
+                                 .expireAfterWrite(maxAge)
+                                 .recordStats()
+                                 .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, responses, CACHE_NAME);
+    }
+
+    /**
+     * Called with each decoded response, only the remembered paths are kept.
+     * @param pathTemplate the path of the proxy method, with its variables
+     * @param path the path requested
+     */
+    @Override
+    public void record(String pathTemplate, String path, Object response) {
+        if (response == null || !REMEMBERED_PATHS.contains(pathTemplate)){
+            return;
+        }
+        responses.put(path, response instanceof List ? Collections.unmodifiableList(new ArrayList<>((List<?>) response)) : response);
+    }
+
+    /**
+     * @return the last response of the path for the book, null when there is none
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T find(String pathTemplate, Integer bookId) {
+        T response = (T) responses.getIfPresent(pathTemplate.replace("{bookId}", String.valueOf(bookId)));
+        meterRegistry.counter("feign.fallback", "path", pathTemplate, "result", response == null ? "unavailable" : "stale").increment();
+        return response;
+    }
+}
@@ -0,0 +1,71 @@
+package org.mickael.librarymsreservation.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.mickael.librarymsreservation.service.contract.CoalescingLookupServiceContract;
+import org.mickael.librarymsreservation.service.contract.LoanCacheServiceContract;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+public class LoanCacheServiceImpl implements LoanCacheServiceContract {
+
+    private final CoalescingLookupServiceContract coalescingLookupServiceContract;
+    private final Cache<Integer, List<LocalDate>> soonReturnedCache;
+
+    private static final String CACHE_NAME = "loanReturnDates";
+
+    @Autowired
+    public LoanCacheServiceImpl(CoalescingLookupServiceContract coalescingLookupServiceContract, MeterRegistry meterRegistry,
+                                @Value("${reservation.cache.loan.maximum-size:10000}") long maximumSize,
+                                @Value("${reservation.cache.loan.time-to-live:30s}") Duration timeToLive) {
+        this.coalescingLookupServiceContract = coalescingLookupServiceContract;
+        this.soonReturnedCache = Caffeine.newBuilder()
+                                         .maximumSize(maximumSize)
+                                         .expireAfterWrite(timeToLive)
+                                         .recordStats()
+                                         .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, soonReturnedCache, CACHE_NAME);
+    }
+
+    @Override
+    public List<LocalDate> getSoonReturned(Integer bookId, String accessToken) {
+        //the return dates do not depend on the caller, the token is only used to load the entry
+        return soonReturnedCache.get(bookId, id -> Collections.unmodifiableList(
+                new ArrayList<>(coalescingLookupServiceContract.getSoonReturned(id, accessToken))));
+    }
+
+    @Override
+    public void evict(Integer bookId) {
+        soonReturnedCache.invalidate(bookId);
+    }
+
+    @Override
+    public void evictAll() {
+        soonReturnedCache.invalidateAll();
+    }
+
+    @Override
+    public Map<String, Number> getStatistics() {
+        CacheStats stats = soonReturnedCache.stats();
+        Map<String, Number> statistics = new LinkedHashMap<>();
+        statistics.put("size", soonReturnedCache.estimatedSize());
+        statistics.put("hitCount", stats.hitCount());
+        statistics.put("missCount", stats.missCount());
+        statistics.put("hitRate", stats.hitRate());
+        statistics.put("evictionCount", stats.evictionCount());
+        return statistics;
+    }
+}
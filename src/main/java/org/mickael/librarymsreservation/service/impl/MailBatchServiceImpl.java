@@ -0,0 +1,99 @@
+package org.mickael.librarymsreservation.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.mickael.librarymsreservation.service.contract.MailBatchServiceContract;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Service;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+public class MailBatchServiceImpl implements MailBatchServiceContract {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MailBatchServiceImpl.class);
+
+    private final JavaMailSender javaMailSender;
+    private final int maxMessagesPerConnection;
+    private final Timer connectionTimer;
+    private final Counter sentCounter;
+    private final Counter failedCounter;
+    //throughput of the last connection, in messages per second (stored as bits of a double)
+    private final AtomicLong lastThroughput = new AtomicLong(Double.doubleToLongBits(0));
+
+    @Autowired
+    public MailBatchServiceImpl(JavaMailSender javaMailSender, MeterRegistry meterRegistry,
+                                @Value("${reservation.mail.batch.max-messages-per-connection:50}") int maxMessagesPerConnection) {
+        this.javaMailSender = javaMailSender;
+        this.maxMessagesPerConnection = maxMessagesPerConnection;
+        this.connectionTimer = Timer.builder("mail.batch.connection")
+                                    .description("Time spent sending the messages of one SMTP connection")
+                                    .register(meterRegistry);
+        this.sentCounter = Counter.builder("mail.batch.messages").tag("result", "sent").register(meterRegistry);
+        this.failedCounter = Counter.builder("mail.batch.messages").tag("result", "failed").register(meterRegistry);
+        Gauge.builder("mail.batch.throughput", lastThroughput, value -> Double.longBitsToDouble(value.get()))
+             .description("Messages per second sent by the last SMTP connection")
+             .baseUnit("messages/s")
+             .register(meterRegistry);
+    }
+
+    /**
+     * This method send the messages over as few SMTP connections as possible:
+     * one connection (one authentication, one TLS handshake) for each group of max-messages-per-connection messages.
+     * @param mailMessages the messages to send
+     * @return the messages which could not be sent, with their exception
+     */
+    @Override
+    public Map<SimpleMailMessage, Exception> sendAll(List<SimpleMailMessage> mailMessages) {
+        Map<SimpleMailMessage, Exception> failedMessages = new IdentityHashMap<>();
+        for (int from = 0; from < mailMessages.size(); from += maxMessagesPerConnection) {
+            List<SimpleMailMessage> connectionMessages = mailMessages.subList(from, Math.min(from + maxMessagesPerConnection, mailMessages.size()));
+            failedMessages.putAll(sendOverOneConnection(connectionMessages));
+        }
+        return failedMessages;
+    }
+
+    private Map<SimpleMailMessage, Exception> sendOverOneConnection(List<SimpleMailMessage> connectionMessages){
+        Map<SimpleMailMessage, Exception> failedMessages = new IdentityHashMap<>();
+        long start = System.nanoTime();
+        try {
+            javaMailSender.send(connectionMessages.toArray(new SimpleMailMessage[0]));
+        } catch (MailSendException ex) {
+            //the failed messages are the ones given to send(), or all of them when the connection failed
+            ex.getFailedMessages().forEach((message, cause) -> {
+                if (message instanceof SimpleMailMessage){
+                    failedMessages.put((SimpleMailMessage) message, cause);
+                }
+            });
+            if (failedMessages.isEmpty()){
+                connectionMessages.forEach(message -> failedMessages.put(message, ex));
+            }
+        } catch (MailException ex) {
+            connectionMessages.forEach(message -> failedMessages.put(message, ex));
+        }
+        long elapsed = System.nanoTime() - start;
+        connectionTimer.record(elapsed, TimeUnit.NANOSECONDS);
+
+        int sent = connectionMessages.size() - failedMessages.size();
+        sentCounter.increment(sent);
+        failedCounter.increment(failedMessages.size());
+        lastThroughput.set(Double.doubleToLongBits(sent / Math.max(elapsed / 1_000_000_000d, 1e-9)));
+        if (!failedMessages.isEmpty()){
+            LOGGER.warn("{} of {} messages could not be sent", failedMessages.size(), connectionMessages.size());
+        }
+        return failedMessages;
+    }
+}
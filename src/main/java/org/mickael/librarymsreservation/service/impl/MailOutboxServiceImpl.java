@@ -0,0 +1,135 @@
+package org.mickael.librarymsreservation.service.impl;
+
+import org.mickael.librarymsreservation.model.MailOutbox;
+import org.mickael.librarymsreservation.model.MailStatus;
+import org.mickael.librarymsreservation.repository.MailOutboxRepository;
+import org.mickael.librarymsreservation.service.contract.MailBatchServiceContract;
+import org.mickael.librarymsreservation.service.contract.MailOutboxServiceContract;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+public class MailOutboxServiceImpl implements MailOutboxServiceContract {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MailOutboxServiceImpl.class);
+    private static final int LAST_ERROR_MAX_LENGTH = 255;
+
+    private final MailOutboxRepository mailOutboxRepository;
+    private final MailBatchServiceContract mailBatchServiceContract;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+
+    @Autowired
+    public MailOutboxServiceImpl(MailOutboxRepository mailOutboxRepository, MailBatchServiceContract mailBatchServiceContract,
+                                 @Value("${reservation.mail.outbox.batch-size:50}") int batchSize,
+                                 @Value("${reservation.mail.outbox.max-attempts:5}") int maxAttempts,
+                                 @Value("${reservation.mail.outbox.initial-backoff:30s}") Duration initialBackoff,
+                                 @Value("${reservation.mail.outbox.max-backoff:1h}") Duration maxBackoff) {
+        this.mailOutboxRepository = mailOutboxRepository;
+        this.mailBatchServiceContract = mailBatchServiceContract;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    /**
+     * This method store the mail in the outbox, in the transaction of the caller.
+     * The mail will be sent later by the dispatcher.
+     * @param mailMessage the mail to send
+     */
+    @Override
+    @Transactional
+    public void enqueue(SimpleMailMessage mailMessage) {
+        MailOutbox mailOutbox = new MailOutbox();
+        mailOutbox.setMailFrom(mailMessage.getFrom());
+        mailOutbox.setMailTo(String.join(",", mailMessage.getTo()));
+        mailOutbox.setSubject(mailMessage.getSubject());
+        mailOutbox.setBody(mailMessage.getText());
+        mailOutbox.setStatus(MailStatus.PENDING);
+        mailOutbox.setAttempts(0);
+        mailOutbox.setCreationDate(LocalDateTime.now());
+        mailOutbox.setNextAttemptDate(mailOutbox.getCreationDate());
+        mailOutboxRepository.save(mailOutbox);
+    }
+
+    /**
+     * This method send one batch of pending mails, over as few SMTP connections as possible.
+     * A failed mail is retried later with an exponential backoff, and is set DEAD after max attempts.
+     * @return the number of mails processed
+     */
+    @Override
+    @Transactional
+    public int dispatchPendingMails() {
+        LocalDateTime now = LocalDateTime.now();
+        List<MailOutbox> mails = mailOutboxRepository.findMailsToSend(MailStatus.PENDING, now, PageRequest.of(0, batchSize));
+        Map<SimpleMailMessage, MailOutbox> mailByMessage = new IdentityHashMap<>();
+        List<SimpleMailMessage> mailMessages = new ArrayList<>(mails.size());
+        for (MailOutbox mail : mails){
+            SimpleMailMessage mailMessage = toMailMessage(mail);
+            mailByMessage.put(mailMessage, mail);
+            mailMessages.add(mailMessage);
+        }
+        Map<SimpleMailMessage, Exception> failedMessages = mailBatchServiceContract.sendAll(mailMessages);
+        for (SimpleMailMessage mailMessage : mailMessages){
+            MailOutbox mail = mailByMessage.get(mailMessage);
+            Exception failure = failedMessages.get(mailMessage);
+            if (failure == null){
+                mail.setStatus(MailStatus.SENT);
+                mail.setSentDate(now);
+                mail.setLastError(null);
+            } else {
+                markFailed(mail, failure, now);
+            }
+        }
+        return mails.size();
+    }
+
+    private void markFailed(MailOutbox mail, Exception ex, LocalDateTime now){
+        mail.setAttempts(mail.getAttempts() + 1);
+        mail.setLastError(truncate(ex.getMessage()));
+        if (mail.getAttempts() >= maxAttempts){
+            mail.setStatus(MailStatus.DEAD);
+            LOGGER.error("Mail {} to {} set DEAD after {} attempts", mail.getId(), mail.getMailTo(), mail.getAttempts(), ex);
+        } else {
+            mail.setNextAttemptDate(now.plus(backoff(mail.getAttempts())));
+            LOGGER.warn("Mail {} to {} failed (attempt {}), next attempt at {}", mail.getId(), mail.getMailTo(), mail.getAttempts(), mail.getNextAttemptDate());
+        }
+    }
+
+    private Duration backoff(int attempts){
+        Duration backoff = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff;
+    }
+
+    private SimpleMailMessage toMailMessage(MailOutbox mail){
+        SimpleMailMessage mailMessage = new SimpleMailMessage();
+        mailMessage.setFrom(mail.getMailFrom());
+        mailMessage.setTo(mail.getMailTo().split(","));
+        mailMessage.setSubject(mail.getSubject());
+        mailMessage.setText(mail.getBody());
+        return mailMessage;
+    }
+
+    private String truncate(String message){
+        if (message == null || message.length() <= LAST_ERROR_MAX_LENGTH){
+            return message;
+        }
+        return message.substring(0, LAST_ERROR_MAX_LENGTH);
+    }
+}
@@ -0,0 +1,419 @@
+package org.mickael.librarymsreservation.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.mickael.librarymsreservation.model.QueueMode;
+import org.mickael.librarymsreservation.model.Reservation;
+import org.mickael.librarymsreservation.repository.ReservationRepository;
+import org.mickael.librarymsreservation.service.contract.QueueViewServiceContract;
+import org.mickael.librarymsreservation.utils.HandlerTransaction;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * The queue of every book, in memory and in queue order, to read the reservations of a book without the database.
+ * A queue is an immutable set of primitive arrays (4 ints and 1 long per reservation), replaced by a modified copy
+ * when a reservation is created, deleted or moved: the readers never lock. The customers are stored once, whatever
+ * the number of their reservations. The view is rebuilt regularly to catch the changes made by other instances,
+ * the books found different from the database are counted.
+ */
+@Service
+public class QueueViewServiceImpl implements QueueViewServiceContract {
+
+    private final ReservationRepository reservationRepository;
+    private final EntityManager entityManager;
+    private final QueueMode queueMode;
+    private final Counter inconsistentBooks;
+
+    private volatile ConcurrentMap<Integer, BookQueue> queues = new ConcurrentHashMap<>();
+    private volatile ConcurrentMap<Integer, CustomerContact> customers = new ConcurrentHashMap<>();
+    //false until the first rebuild, the reads go to the database
+    private volatile boolean ready;
+    //books changed while the view is rebuilt from the database, null when no rebuild is running
+    private volatile Set<Integer> changedDuringRebuild;
+
+    @Autowired
+    public QueueViewServiceImpl(ReservationRepository reservationRepository, EntityManager entityManager, MeterRegistry meterRegistry,
+                                @Value("${reservation.queue.mode:POSITION}") QueueMode queueMode) {
+        this.reservationRepository = reservationRepository;
+        this.entityManager = entityManager;
+        this.queueMode = queueMode;
+        inconsistentBooks = Counter.builder("reservation.queue.view.inconsistencies")
+                                   .description("Books found different from the database when the view was rebuilt").register(meterRegistry);
+        Gauge.builder("reservation.queue.view.books", this, view -> view.queues.size())
+             .description("Books with a queue in the view").register(meterRegistry);
+        Gauge.builder("reservation.queue.view.reservations", this, QueueViewServiceImpl::reservationCount)
+             .description("Reservations in the view").register(meterRegistry);
+        Gauge.builder("reservation.queue.view.memory", this, QueueViewServiceImpl::memoryBytes)
+             .baseUnit("bytes").description("Estimated heap used by the view").register(meterRegistry);
+    }
+
+    /**
+     * @return the reservations of the book in queue order, null when the view is not built yet
+     */
+    @Override
+    public List<Reservation> findQueue(Integer bookId) {
+        if (!ready){
+            return null;
+        }
+        BookQueue bookQueue = queues.get(bookId);
+        return bookQueue == null ? new ArrayList<>() : bookQueue.toReservations(bookId, customers);
+    }
+
+    @Override
+    public void insertAfterCommit(Reservation reservation) {
+        if (reservation.getId() == null || reservation.getCustomerId() == null || reservation.getBookId() == null){
+            return;
+        }
+        HandlerTransaction.afterCommit(() -> {
+            customers.put(reservation.getCustomerId(), new CustomerContact(reservation));
+            change(reservation.getBookId(), bookQueue -> bookQueue.insert(reservation, queueMode));
+        });
+    }
+
+    @Override
+    public void removeAfterCommit(Integer bookId, Integer reservationId) {
+        HandlerTransaction.afterCommit(() -> change(bookId, bookQueue -> bookQueue.remove(reservationId)));
+    }
+
+    /**
+     * @param endOfPriorities may be null to keep the current end of priority of every reservation
+     */
+    @Override
+    public void updateDatesAfterCommit(Integer bookId, List<Integer> reservationIds, List<LocalDate> soonDisponibilityDates, List<LocalDate> endOfPriorities) {
+        HandlerTransaction.afterCommit(() -> change(bookId, bookQueue -> bookQueue.withDates(reservationIds, soonDisponibilityDates, endOfPriorities)));
+    }
+
+    /**
+     * Read every queue from the database and replace the view.
+     * @return the number of books which were different in the view (and not changed during the rebuild)
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public int rebuild() {
+        changedDuringRebuild = ConcurrentHashMap.newKeySet();
+        try {
+            ConcurrentMap<Integer, BookQueue> rebuiltQueues = new ConcurrentHashMap<>();
+            ConcurrentMap<Integer, CustomerContact> rebuiltCustomers = new ConcurrentHashMap<>();
+            try (Stream<Reservation> reservations = queueMode == QueueMode.TIMESTAMP
+                                                            ? reservationRepository.streamAllOrderByBookIdAndCreation()
+                                                            : reservationRepository.streamAllOrderByBookIdAndPosition()) {
+                //the rows are ordered by book: only the queue of one book is being built at a time
+                List<Reservation> bookReservations = new ArrayList<>();
+                reservations.forEach(reservation -> {
+                    if (!bookReservations.isEmpty() && !bookReservations.get(0).getBookId().equals(reservation.getBookId())){
+                        rebuiltQueues.put(bookReservations.get(0).getBookId(), BookQueue.of(bookReservations));
+                        bookReservations.clear();
+                    }
+                    bookReservations.add(reservation);
+                    rebuiltCustomers.putIfAbsent(reservation.getCustomerId(), new CustomerContact(reservation));
+                    entityManager.detach(reservation);
+                });
+                if (!bookReservations.isEmpty()){
+                    rebuiltQueues.put(bookReservations.get(0).getBookId(), BookQueue.of(bookReservations));
+                }
+            }
+            int inconsistencies = ready ? countInconsistencies(rebuiltQueues, changedDuringRebuild) : 0;
+            queues = rebuiltQueues;
+            customers = rebuiltCustomers;
+            ready = true;
+            //the rows read may be older than the changes made meanwhile, read these books again
+            Set<Integer> changedBookIds = changedDuringRebuild;
+            changedDuringRebuild = null;
+            changedBookIds.forEach(this::reload);
+            inconsistentBooks.increment(inconsistencies);
+            return inconsistencies;
+        } finally {
+            changedDuringRebuild = null;
+        }
+    }
+
+    public long reservationCount(){
+        return queues.values().stream().mapToLong(BookQueue::size).sum();
+    }
+
+    public long memoryBytes(){
+        return queues.values().stream().mapToLong(BookQueue::memoryBytes).sum()
+                       + customers.values().stream().mapToLong(CustomerContact::memoryBytes).sum();
+    }
+
+    private void change(Integer bookId, UnaryOperator<BookQueue> modification){
+        Set<Integer> changedBookIds = changedDuringRebuild;
+        if (changedBookIds != null){
+            changedBookIds.add(bookId);
+        }
+        queues.compute(bookId, (id, bookQueue) -> {
+            BookQueue modifiedQueue = modification.apply(bookQueue == null ? BookQueue.EMPTY : bookQueue);
+            return modifiedQueue.size() == 0 ? null : modifiedQueue;
+        });
+    }
+
+    private void reload(Integer bookId){
+        List<Reservation> reservations = reservationRepository.findAllByBookId(bookId);
+        reservations.sort(queueMode.getQueueOrder());
+        reservations.forEach(reservation -> customers.put(reservation.getCustomerId(), new CustomerContact(reservation)));
+        if (reservations.isEmpty()){
+            queues.remove(bookId);
+        } else {
+            queues.put(bookId, BookQueue.of(reservations));
+        }
+    }
+
+    private int countInconsistencies(ConcurrentMap<Integer, BookQueue> rebuiltQueues, Set<Integer> changedBookIds){
+        Set<Integer> bookIds = new HashSet<>(queues.keySet());
+        bookIds.addAll(rebuiltQueues.keySet());
+        bookIds.removeAll(changedBookIds);
+        int inconsistencies = 0;
+        for (Integer bookId : bookIds){
+            if (!Objects.equals(queues.get(bookId), rebuiltQueues.get(bookId))){
+                inconsistencies++;
+            }
+        }
+        return inconsistencies;
+    }
+
+    static final class CustomerContact {
+
+        private final String email;
+        private final String firstname;
+        private final String lastname;
+
+        CustomerContact(Reservation reservation) {
+            this.email = reservation.getCustomerEmail();
+            this.firstname = reservation.getCustomerFirstname();
+            this.lastname = reservation.getCustomerLastname();
+        }
+
+        long memoryBytes(){
+            return 24 + stringBytes(email) + stringBytes(firstname) + stringBytes(lastname);
+        }
+    }
+
+    /**
+     * The queue of a book, never modified: the methods return a modified copy.
+     * The position of a reservation is its index + 1.
+     */
+    static final class BookQueue {
+
+        static final BookQueue EMPTY = new BookQueue(null, new int[0], new int[0], new long[0], new int[0], new int[0]);
+
+        private static final int NO_DATE = Integer.MIN_VALUE;
+        private static final long NO_DATE_TIME = Long.MIN_VALUE;
+
+        private final String bookTitle;
+        private final int[] reservationIds;
+        private final int[] customerIds;
+        //micro seconds since the epoch, the precision of the database
+        private final long[] creationDates;
+        //days since the epoch
+        private final int[] soonDisponibilityDates;
+        private final int[] endOfPriorities;
+
+        private BookQueue(String bookTitle, int[] reservationIds, int[] customerIds, long[] creationDates,
+                          int[] soonDisponibilityDates, int[] endOfPriorities) {
+            this.bookTitle = bookTitle;
+            this.reservationIds = reservationIds;
+            this.customerIds = customerIds;
+            this.creationDates = creationDates;
+            this.soonDisponibilityDates = soonDisponibilityDates;
+            this.endOfPriorities = endOfPriorities;
+        }
+
+        static BookQueue of(List<Reservation> reservations){
+            int size = reservations.size();
+            BookQueue bookQueue = new BookQueue(reservations.get(0).getBookTitle(), new int[size], new int[size], new long[size], new int[size], new int[size]);
+            for (int i = 0; i < size; i++) {
+                bookQueue.set(i, reservations.get(i));
+            }
+            return bookQueue;
+        }
+
+        int size(){
+            return reservationIds.length;
+        }
+
+        /**
+         * The after-commit hooks of two reservations of the book may run in another order than their commits:
+         * the reservation is inserted at its place in the queue, not appended.
+         */
+        BookQueue insert(Reservation reservation, QueueMode queueMode){
+            int index = insertionIndex(reservation, queueMode);
+            BookQueue bookQueue = new BookQueue(reservation.getBookTitle(), withSlot(reservationIds, index), withSlot(customerIds, index),
+                    withSlot(creationDates, index), withSlot(soonDisponibilityDates, index), withSlot(endOfPriorities, index));
+            bookQueue.set(index, reservation);
+            return bookQueue;
+        }
+
+        BookQueue remove(Integer reservationId){
+            int index = indexOf(reservationId);
+            if (index < 0){
+                return this;
+            }
+            return new BookQueue(bookTitle, without(reservationIds, index), without(customerIds, index), without(creationDates, index),
+                    without(soonDisponibilityDates, index), without(endOfPriorities, index));
+        }
+
+        BookQueue withDates(List<Integer> ids, List<LocalDate> soonDates, List<LocalDate> endDates){
+            int[] soonDisponibilityDatesCopy = soonDisponibilityDates.clone();
+            int[] endOfPrioritiesCopy = endOfPriorities.clone();
+            for (int i = 0; i < ids.size(); i++) {
+                int index = indexOf(ids.get(i));
+                if (index >= 0){
+                    soonDisponibilityDatesCopy[index] = toDays(soonDates.get(i));
+                    if (endDates != null){
+                        endOfPrioritiesCopy[index] = toDays(endDates.get(i));
+                    }
+                }
+            }
+            return new BookQueue(bookTitle, reservationIds, customerIds, creationDates, soonDisponibilityDatesCopy, endOfPrioritiesCopy);
+        }
+
+        List<Reservation> toReservations(Integer bookId, ConcurrentMap<Integer, CustomerContact> customers){
+            List<Reservation> reservations = new ArrayList<>(size());
+            for (int i = 0; i < size(); i++) {
+                Reservation reservation = new Reservation();
+                reservation.setId(reservationIds[i]);
+                reservation.setCreationReservationDate(toDateTime(creationDates[i]));
+                reservation.setSoonDisponibilityDate(toDate(soonDisponibilityDates[i]));
+                reservation.setEndOfPriority(toDate(endOfPriorities[i]));
+                reservation.setCustomerId(customerIds[i]);
+                CustomerContact customerContact = customers.get(customerIds[i]);
+                if (customerContact != null){
+                    reservation.setCustomerEmail(customerContact.email);
+                    reservation.setCustomerFirstname(customerContact.firstname);
+                    reservation.setCustomerLastname(customerContact.lastname);
+                }
+                reservation.setBookId(bookId);
+                reservation.setBookTitle(bookTitle);
+                reservation.setPosition(i + 1);
+                reservations.add(reservation);
+            }
+            return reservations;
+        }
+
+        long memoryBytes(){
+            //object and array headers, then 4 ints and 1 long per reservation
+            return 16 + 5 * 16L + size() * 24L + stringBytes(bookTitle);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            BookQueue bookQueue = (BookQueue) o;
+            return Objects.equals(bookTitle, bookQueue.bookTitle) && Arrays.equals(reservationIds, bookQueue.reservationIds)
+                           && Arrays.equals(customerIds, bookQueue.customerIds) && Arrays.equals(creationDates, bookQueue.creationDates)
+                           && Arrays.equals(soonDisponibilityDates, bookQueue.soonDisponibilityDates)
+                           && Arrays.equals(endOfPriorities, bookQueue.endOfPriorities);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(reservationIds);
+        }
+
+        private void set(int index, Reservation reservation){
+            reservationIds[index] = reservation.getId();
+            customerIds[index] = reservation.getCustomerId();
+            creationDates[index] = toMicros(reservation.getCreationReservationDate());
+            soonDisponibilityDates[index] = toDays(reservation.getSoonDisponibilityDate());
+            endOfPriorities[index] = toDays(reservation.getEndOfPriority());
+        }
+
+        private int insertionIndex(Reservation reservation, QueueMode queueMode){
+            if (queueMode == QueueMode.TIMESTAMP){
+                //after the reservations created before, usually all of them
+                long creationDate = toMicros(reservation.getCreationReservationDate());
+                int index = size();
+                while (index > 0 && (creationDates[index - 1] > creationDate
+                                             || (creationDates[index - 1] == creationDate && reservationIds[index - 1] > reservation.getId()))){
+                    index--;
+                }
+                return index;
+            }
+            //the position allocated by the database, the reservations before it may not be in the view yet
+            return reservation.getPosition() == null ? size() : Math.max(0, Math.min(size(), reservation.getPosition() - 1));
+        }
+
+        private int indexOf(Integer reservationId){
+            for (int i = 0; i < reservationIds.length; i++) {
+                if (reservationIds[i] == reservationId){
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static int[] without(int[] values, int index){
+            int[] copy = new int[values.length - 1];
+            System.arraycopy(values, 0, copy, 0, index);
+            System.arraycopy(values, index + 1, copy, index, values.length - index - 1);
+            return copy;
+        }
+
+        private static long[] without(long[] values, int index){
+            long[] copy = new long[values.length - 1];
+            System.arraycopy(values, 0, copy, 0, index);
+            System.arraycopy(values, index + 1, copy, index, values.length - index - 1);
+            return copy;
+        }
+
+        private static int[] withSlot(int[] values, int index){
+            int[] copy = new int[values.length + 1];
+            System.arraycopy(values, 0, copy, 0, index);
+            System.arraycopy(values, index, copy, index + 1, values.length - index);
+            return copy;
+        }
+
+        private static long[] withSlot(long[] values, int index){
+            long[] copy = new long[values.length + 1];
+            System.arraycopy(values, 0, copy, 0, index);
+            System.arraycopy(values, index, copy, index + 1, values.length - index);
+            return copy;
+        }
+
+        private static int toDays(LocalDate date){
+            return date == null ? NO_DATE : (int) date.toEpochDay();
+        }
+
+        private static LocalDate toDate(int days){
+            return days == NO_DATE ? null : LocalDate.ofEpochDay(days);
+        }
+
+        private static long toMicros(LocalDateTime dateTime){
+            return dateTime == null ? NO_DATE_TIME : dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + dateTime.getNano() / 1_000;
+        }
+
+        private static LocalDateTime toDateTime(long micros){
+            return micros == NO_DATE_TIME ? null
+                           : LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+        }
+    }
+
+    private static long stringBytes(String value){
+        //String and char array headers, then 2 bytes per char
+        return value == null ? 0 : 40 + 2L * value.length();
+    }
+}
@@ -0,0 +1,172 @@
+package org.mickael.librarymsreservation.service.impl;
+
+import org.mickael.librarymsreservation.exception.ServiceUnavailableException;
+import org.mickael.librarymsreservation.model.ReservationCheck;
+import org.mickael.librarymsreservation.proxy.FeignBookProxy;
+import org.mickael.librarymsreservation.proxy.FeignLoanProxy;
+import org.mickael.librarymsreservation.service.contract.CoalescingLookupServiceContract;
+import org.mickael.librarymsreservation.service.contract.LoanCacheServiceContract;
+import org.mickael.librarymsreservation.service.contract.ReservationCheckServiceContract;
+import org.mickael.librarymsreservation.utils.HandlerHystrix;
+import org.mickael.librarymsreservation.utils.HandlerToken;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+@Service
+public class ReservationCheckServiceImpl implements ReservationCheckServiceContract {
+
+    private final FeignLoanProxy feignLoanProxy;
+    private final FeignBookProxy feignBookProxy;
+    private final LoanCacheServiceContract loanCacheServiceContract;
+    private final CoalescingLookupServiceContract coalescingLookupServiceContract;
+    private final Executor feignTaskExecutor;
+    private final long timeoutMillis;
+
+    private static final String UNAVAILABLE_MSG = "Unable to check the reservation with the loan and book services";
+
+    @Autowired
+    public ReservationCheckServiceImpl(FeignLoanProxy feignLoanProxy, FeignBookProxy feignBookProxy, LoanCacheServiceContract loanCacheServiceContract,
+                                       CoalescingLookupServiceContract coalescingLookupServiceContract,
+                                       @Qualifier("feignTaskExecutor") Executor feignTaskExecutor,
+                                       @Value("${reservation.async.timeout:10000}") long timeoutMillis) {
+        this.feignLoanProxy = feignLoanProxy;
+        this.feignBookProxy = feignBookProxy;
+        this.loanCacheServiceContract = loanCacheServiceContract;
+        this.coalescingLookupServiceContract = coalescingLookupServiceContract;
+        this.feignTaskExecutor = feignTaskExecutor;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public ReservationCheck checkReservation(Integer customerId, Integer bookId, String accessToken) {
+        String token = HandlerToken.formatToken(accessToken);
+
+        //the four calls are independent, run them in parallel
+        CompletableFuture<List<LocalDate>> listReturnLoanDate = CompletableFuture.supplyAsync(
+                () -> loanCacheServiceContract.getSoonReturned(bookId, token), feignTaskExecutor);
+        CompletableFuture<Integer> numberOfCopies = CompletableFuture.supplyAsync(
+                () -> HandlerHystrix.call(() -> feignBookProxy.numberOfCopyForBook(bookId, token)), feignTaskExecutor);
+        CompletableFuture<Integer> copiesAvailable = CompletableFuture.supplyAsync(
+                () -> coalescingLookupServiceContract.numberOfCopyAvailableForBook(bookId, token), feignTaskExecutor);
+        CompletableFuture<Boolean> loanOngoing = CompletableFuture.supplyAsync(
+                () -> HandlerHystrix.call(() -> feignLoanProxy.checkIfLoanExistForCustomerIdAndBookId(customerId, bookId, token)), feignTaskExecutor);
+
+        awaitAllOrFirstFailure(listReturnLoanDate, numberOfCopies, copiesAvailable, loanOngoing);
+
+        return new ReservationCheck(listReturnLoanDate.join(), numberOfCopies.join(), copiesAvailable.join(), loanOngoing.join());
+    }
+
+    /**
+     * Same as checkReservation without the loans of the customer, the loan ongoing is always false.
+     */
+    @Override
+    public ReservationCheck checkBook(Integer bookId, String accessToken) {
+        List<CompletableFuture<?>> calls = new ArrayList<>();
+        CompletableFuture<ReservationCheck> reservationCheck = checkBookAsync(bookId, HandlerToken.formatToken(accessToken), calls);
+
+        awaitAllOrFirstFailure(calls.toArray(new CompletableFuture<?>[0]));
+
+        return reservationCheck.join();
+    }
+
+    /**
+     * checkBook for several books, all the calls run in parallel (the feign executor runs the overflow on the caller thread).
+     * @return the check of each distinct book, by book id
+     */
+    @Override
+    public Map<Integer, ReservationCheck> checkBooks(Collection<Integer> bookIds, String accessToken) {
+        String token = HandlerToken.formatToken(accessToken);
+        List<CompletableFuture<?>> calls = new ArrayList<>();
+        Map<Integer, CompletableFuture<ReservationCheck>> reservationChecks = new HashMap<>();
+        for (Integer bookId : bookIds){
+            reservationChecks.computeIfAbsent(bookId, id -> checkBookAsync(id, token, calls));
+        }
+
+        awaitAllOrFirstFailure(calls.toArray(new CompletableFuture<?>[0]));
+
+        Map<Integer, ReservationCheck> reservationCheckByBookId = new HashMap<>();
+        reservationChecks.forEach((bookId, reservationCheck) -> reservationCheckByBookId.put(bookId, reservationCheck.join()));
+        return reservationCheckByBookId;
+    }
+
+    /**
+     * Start the three calls of the check of a book.
+     * @param calls the pending calls, the three calls are added to it
+     */
+    private CompletableFuture<ReservationCheck> checkBookAsync(Integer bookId, String token, List<CompletableFuture<?>> calls){
+        CompletableFuture<List<LocalDate>> listReturnLoanDate = CompletableFuture.supplyAsync(
+                () -> loanCacheServiceContract.getSoonReturned(bookId, token), feignTaskExecutor);
+        CompletableFuture<Integer> numberOfCopies = CompletableFuture.supplyAsync(
+                () -> HandlerHystrix.call(() -> feignBookProxy.numberOfCopyForBook(bookId, token)), feignTaskExecutor);
+        CompletableFuture<Integer> copiesAvailable = CompletableFuture.supplyAsync(
+                () -> coalescingLookupServiceContract.numberOfCopyAvailableForBook(bookId, token), feignTaskExecutor);
+        calls.add(listReturnLoanDate);
+        calls.add(numberOfCopies);
+        calls.add(copiesAvailable);
+
+        return CompletableFuture.allOf(listReturnLoanDate, numberOfCopies, copiesAvailable).thenApply(
+                done -> new ReservationCheck(listReturnLoanDate.join(), numberOfCopies.join(), copiesAvailable.join(), false));
+    }
+
+    /**
+     * This method wait for all the calls, but stop as soon as one of them failed
+     * and rethrow its exception (ie the exception built by the error decoder).
+     *
+     * @param futures the pending calls
+     */
+    private void awaitAllOrFirstFailure(CompletableFuture<?>... futures){
+        CompletableFuture<Object> firstFailure = new CompletableFuture<>();
+        for (CompletableFuture<?> future : futures){
+            future.whenComplete((result, ex) -> {
+                if (ex != null){
+                    firstFailure.completeExceptionally(ex);
+                }
+            });
+        }
+        try {
+            CompletableFuture.anyOf(CompletableFuture.allOf(futures), firstFailure).get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ex) {
+            cancelAll(futures);
+            throw unwrap(ex.getCause());
+        } catch (TimeoutException ex) {
+            cancelAll(futures);
+            throw new ServiceUnavailableException(UNAVAILABLE_MSG, ex);
+        } catch (InterruptedException ex) {
+            cancelAll(futures);
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException(UNAVAILABLE_MSG, ex);
+        }
+    }
+
+    private void cancelAll(CompletableFuture<?>... futures){
+        for (CompletableFuture<?> future : futures){
+            future.cancel(true);
+        }
+    }
+
+    private RuntimeException unwrap(Throwable throwable){
+        Throwable cause = throwable;
+        while (cause instanceof CompletionException && cause.getCause() != null){
+            cause = cause.getCause();
+        }
+        if (cause instanceof RuntimeException){
+            return (RuntimeException) cause;
+        }
+        return new ServiceUnavailableException(UNAVAILABLE_MSG, cause);
+    }
+}
@@ -0,0 +1,135 @@
+package org.mickael.librarymsreservation.service.impl;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.mickael.librarymsreservation.model.ExportFormat;
+import org.mickael.librarymsreservation.model.QueueMode;
+import org.mickael.librarymsreservation.model.Reservation;
+import org.mickael.librarymsreservation.repository.ReservationRepository;
+import org.mickael.librarymsreservation.service.contract.ReservationExportServiceContract;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+@Service
+public class ReservationExportServiceImpl implements ReservationExportServiceContract {
+
+    private static final String CSV_HEADER = "id,creationReservationDate,soonDisponibilityDate,endOfPriority,customerId,"
+                                                     + "customerEmail,customerFirstname,customerLastname,bookId,bookTitle,position";
+
+    private final ReservationRepository reservationRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final int flushSize;
+    private final QueueMode queueMode;
+
+    @Autowired
+    public ReservationExportServiceImpl(ReservationRepository reservationRepository, EntityManager entityManager, ObjectMapper objectMapper,
+                                        @Value("${reservation.export.flush-size:500}") int flushSize,
+                                        @Value("${reservation.queue.mode:POSITION}") QueueMode queueMode) {
+        this.reservationRepository = reservationRepository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.flushSize = flushSize;
+        this.queueMode = queueMode;
+    }
+
+    /**
+     * Write every reservation to the output stream while they are read from the database cursor.
+     * The output stream is flushed every flush size rows and is not closed.
+     * @return the number of reservations written
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public long export(ExportFormat exportFormat, OutputStream outputStream) throws IOException {
+        try (Stream<Reservation> reservations = queueMode == QueueMode.TIMESTAMP
+                                                        ? reservationRepository.streamAllWithQueuePosition()
+                                                        : reservationRepository.streamAll()) {
+            if (exportFormat == ExportFormat.CSV) {
+                return writeCsv(reservations.iterator(), outputStream);
+            }
+            return writeNdjson(reservations.iterator(), outputStream);
+        }
+    }
+
+    private long writeNdjson(Iterator<Reservation> reservations, OutputStream outputStream) throws IOException {
+        JsonGenerator jsonGenerator = objectMapper.getFactory().createGenerator(outputStream);
+        jsonGenerator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        jsonGenerator.setRootValueSeparator(new SerializedString("\n"));
+        long count = 0;
+        while (reservations.hasNext()) {
+            Reservation reservation = reservations.next();
+            jsonGenerator.writeObject(reservation);
+            release(reservation);
+            if (++count % flushSize == 0) {
+                jsonGenerator.flush();
+            }
+        }
+        if (count > 0) {
+            jsonGenerator.writeRaw('\n');
+        }
+        jsonGenerator.close();
+        return count;
+    }
+
+    private long writeCsv(Iterator<Reservation> reservations, OutputStream outputStream) throws IOException {
+        //not closed, that would close the response stream
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        long count = 0;
+        while (reservations.hasNext()) {
+            Reservation reservation = reservations.next();
+            writeCsvLine(writer, reservation);
+            release(reservation);
+            if (++count % flushSize == 0) {
+                writer.flush();
+            }
+        }
+        writer.flush();
+        return count;
+    }
+
+    private void writeCsvLine(Writer writer, Reservation reservation) throws IOException {
+        Object[] values = {reservation.getId(), reservation.getCreationReservationDate(), reservation.getSoonDisponibilityDate(),
+                reservation.getEndOfPriority(), reservation.getCustomerId(), reservation.getCustomerEmail(),
+                reservation.getCustomerFirstname(), reservation.getCustomerLastname(), reservation.getBookId(),
+                reservation.getBookTitle(), reservation.getPosition()};
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(escapeCsv(values[i]));
+        }
+        writer.write('\n');
+    }
+
+    private String escapeCsv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+
+    //the persistence context would otherwise keep every exported reservation until the end of the transaction
+    private void release(Reservation reservation) {
+        entityManager.detach(reservation);
+    }
+
+}
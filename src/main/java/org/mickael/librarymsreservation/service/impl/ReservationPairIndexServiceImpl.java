@@ -0,0 +1,162 @@
+package org.mickael.librarymsreservation.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.mickael.librarymsreservation.model.ReservationKey;
+import org.mickael.librarymsreservation.repository.ReservationRepository;
+import org.mickael.librarymsreservation.service.contract.ReservationPairIndexServiceContract;
+import org.mickael.librarymsreservation.utils.HandlerTransaction;
+import org.mickael.librarymsreservation.utils.LongHashSet;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+/**
+ * The (customer id, book id) pairs having a reservation, kept in memory so that most pre-checks of a save,
+ * which answer no, do not go to the database. A pair absent from the index has no reservation, unless it was
+ * created by another instance since the last rebuild: the unique index of the table stays the real guard,
+ * and the checks which must be exact do not use the index.
+ * A pair present in the index is always confirmed by the database.
+ */
+@Service
+public class ReservationPairIndexServiceImpl implements ReservationPairIndexServiceContract {
+
+    private static final int INITIAL_SIZE = 1024;
+
+    private final ReservationRepository reservationRepository;
+    private LongHashSet pairs = new LongHashSet(INITIAL_SIZE);
+    //false until the first rebuild, every check goes to the database
+    private boolean ready;
+    //changes made while the index is rebuilt from the database, null when no rebuild is running
+    private List<long[]> changedDuringRebuild;
+
+    private final Counter negativeLookups;
+    private final Counter confirmedLookups;
+    private final Counter falsePositiveLookups;
+
+    private static final long ADDED = 1L;
+    private static final long REMOVED = 0L;
+
+    @Autowired
+    public ReservationPairIndexServiceImpl(ReservationRepository reservationRepository, MeterRegistry meterRegistry) {
+        this.reservationRepository = reservationRepository;
+        negativeLookups = Counter.builder("reservation.pair.index.lookups").tag("result", "negative")
+                                 .description("Checks answered by the index without the database").register(meterRegistry);
+        confirmedLookups = Counter.builder("reservation.pair.index.lookups").tag("result", "confirmed")
+                                  .description("Pairs of the index confirmed by the database").register(meterRegistry);
+        falsePositiveLookups = Counter.builder("reservation.pair.index.lookups").tag("result", "false-positive")
+                                      .description("Pairs of the index not found in the database").register(meterRegistry);
+        Gauge.builder("reservation.pair.index.size", this, ReservationPairIndexServiceImpl::size)
+             .description("Pairs in the index").register(meterRegistry);
+        Gauge.builder("reservation.pair.index.memory", this, ReservationPairIndexServiceImpl::memoryBytes)
+             .baseUnit("bytes").description("Memory used by the table of the index").register(meterRegistry);
+        Gauge.builder("reservation.pair.index.false.positive.rate", this, ReservationPairIndexServiceImpl::falsePositiveRate)
+             .description("Share of the pairs of the index not found in the database").register(meterRegistry);
+    }
+
+    @Override
+    public boolean exists(Integer customerId, Integer bookId, BooleanSupplier databaseCheck) {
+        if (customerId != null && bookId != null && isReady() && !contains(key(customerId, bookId))){
+            negativeLookups.increment();
+            return false;
+        }
+        boolean exists = databaseCheck.getAsBoolean();
+        if (isReady()){
+            if (exists){
+                confirmedLookups.increment();
+            } else {
+                falsePositiveLookups.increment();
+            }
+        }
+        return exists;
+    }
+
+    /**
+     * The index is changed once the transaction is committed: a rollback leaves it unchanged.
+     */
+    @Override
+    public void addAfterCommit(Integer customerId, Integer bookId) {
+        if (customerId == null || bookId == null){
+            return;
+        }
+        HandlerTransaction.afterCommit(() -> change(key(customerId, bookId), ADDED));
+    }
+
+    @Override
+    public void removeAfterCommit(Integer customerId, Integer bookId) {
+        if (customerId == null || bookId == null){
+            return;
+        }
+        HandlerTransaction.afterCommit(() -> change(key(customerId, bookId), REMOVED));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        synchronized (this){
+            changedDuringRebuild = new ArrayList<>();
+        }
+        try (Stream<ReservationKey> reservationKeys = reservationRepository.streamAllKeys()) {
+            LongHashSet rebuiltPairs = new LongHashSet(Math.max(INITIAL_SIZE, size()));
+            reservationKeys.forEach(reservationKey -> rebuiltPairs.add(key(reservationKey.getCustomerId(), reservationKey.getBookId())));
+            synchronized (this){
+                //the changes made during the rebuild are more recent than the rows read
+                for (long[] change : changedDuringRebuild){
+                    if (change[1] == ADDED){
+                        rebuiltPairs.add(change[0]);
+                    } else {
+                        rebuiltPairs.remove(change[0]);
+                    }
+                }
+                pairs = rebuiltPairs;
+                ready = true;
+            }
+        } finally {
+            synchronized (this){
+                changedDuringRebuild = null;
+            }
+        }
+    }
+
+    public synchronized int size(){
+        return pairs.size();
+    }
+
+    public synchronized long memoryBytes(){
+        return pairs.memoryBytes();
+    }
+
+    public double falsePositiveRate(){
+        double positives = confirmedLookups.count() + falsePositiveLookups.count();
+        return positives == 0 ? 0 : falsePositiveLookups.count() / positives;
+    }
+
+    private synchronized boolean isReady(){
+        return ready;
+    }
+
+    private synchronized boolean contains(long key){
+        return pairs.contains(key);
+    }
+
+    private synchronized void change(long key, long change){
+        if (change == ADDED){
+            pairs.add(key);
+        } else {
+            pairs.remove(key);
+        }
+        if (changedDuringRebuild != null){
+            changedDuringRebuild.add(new long[]{key, change});
+        }
+    }
+
+    private static long key(Integer customerId, Integer bookId){
+        return ((long) customerId << 32) | (bookId & 0xFFFFFFFFL);
+    }
+}
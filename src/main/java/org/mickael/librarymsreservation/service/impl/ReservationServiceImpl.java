@@ -1,47 +1,135 @@
 package org.mickael.librarymsreservation.service.impl;
 
+import org.mickael.librarymsreservation.exception.BadRequestException;
 import org.mickael.librarymsreservation.exception.ReservationAlreadyExistException;
 import org.mickael.librarymsreservation.exception.ReservationNotAllowedException;
 import org.mickael.librarymsreservation.exception.ReservationNotFoundException;
+import org.mickael.librarymsreservation.model.ImportStatus;
+import org.mickael.librarymsreservation.model.NotificationReport;
+import org.mickael.librarymsreservation.model.QueueMode;
 import org.mickael.librarymsreservation.model.Reservation;
+import org.mickael.librarymsreservation.model.ReservationCheck;
+import org.mickael.librarymsreservation.model.ReservationFilter;
+import org.mickael.librarymsreservation.model.ReservationImportReport;
+import org.mickael.librarymsreservation.model.ReservationImportResult;
+import org.mickael.librarymsreservation.model.ReservationKey;
+import org.mickael.librarymsreservation.model.ReservationPage;
+import org.mickael.librarymsreservation.model.ReservationSchedule;
+import org.mickael.librarymsreservation.repository.ReservationJdbcRepository;
 import org.mickael.librarymsreservation.repository.ReservationRepository;
+import org.mickael.librarymsreservation.scheduler.NotificationQueue;
+import org.mickael.librarymsreservation.service.contract.CustomerReservationCacheServiceContract;
+import org.mickael.librarymsreservation.service.contract.MailBatchServiceContract;
+import org.mickael.librarymsreservation.service.contract.MailOutboxServiceContract;
+import org.mickael.librarymsreservation.service.contract.QueueViewServiceContract;
+import org.mickael.librarymsreservation.service.contract.ReservationPairIndexServiceContract;
 import org.mickael.librarymsreservation.service.contract.ReservationServiceContract;
+import org.mickael.librarymsreservation.utils.HandlerCursor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
 
 import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class ReservationServiceImpl implements ReservationServiceContract {
 
     private final ReservationRepository reservationRepository;
+    private final ReservationJdbcRepository reservationJdbcRepository;
+    private final EntityManager entityManager;
     private JavaMailSender javaMailSender;
     private SimpleMailMessage preConfiguredMessage;
+    private final MailOutboxServiceContract mailOutboxServiceContract;
+    private final MailBatchServiceContract mailBatchServiceContract;
+    private final int mailChunkSize;
+    private final NotificationQueue notificationQueue;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    private final QueueMode queueMode;
+    private final ReservationPairIndexServiceContract reservationPairIndexServiceContract;
+    private final QueueViewServiceContract queueViewServiceContract;
+    private final CustomerReservationCacheServiceContract customerReservationCacheServiceContract;
 
     private static final String NOT_FOUND_MSG = "Reservation not Found in repository";
     private static final String RESERVATION_NOT_ALLOWED_MSG = "Reservation impossible. Contactez la bibliothèque. Merci.";
     private static final String ALREADY_RESERVED_MSG = "Vous avez déjà une réservation pour ce livre.";
 
     @Autowired
-    public ReservationServiceImpl(ReservationRepository reservationRepository, JavaMailSender javaMailSender, SimpleMailMessage preConfiguredMessage) {
+    public ReservationServiceImpl(ReservationRepository reservationRepository, ReservationJdbcRepository reservationJdbcRepository, EntityManager entityManager,
+                                  JavaMailSender javaMailSender, SimpleMailMessage preConfiguredMessage,
+                                  MailOutboxServiceContract mailOutboxServiceContract, MailBatchServiceContract mailBatchServiceContract,
+                                  @Value("${reservation.mail.batch.chunk-size:200}") int mailChunkSize, NotificationQueue notificationQueue,
+                                  @Value("${reservation.page.default-size:50}") int defaultPageSize,
+                                  @Value("${reservation.page.max-size:500}") int maxPageSize,
+                                  @Value("${reservation.queue.mode:POSITION}") QueueMode queueMode,
+                                  ReservationPairIndexServiceContract reservationPairIndexServiceContract,
+                                  QueueViewServiceContract queueViewServiceContract,
+                                  CustomerReservationCacheServiceContract customerReservationCacheServiceContract) {
         this.reservationRepository = reservationRepository;
+        this.reservationJdbcRepository = reservationJdbcRepository;
+        this.entityManager = entityManager;
         this.javaMailSender = javaMailSender;
         this.preConfiguredMessage = preConfiguredMessage;
+        this.mailOutboxServiceContract = mailOutboxServiceContract;
+        this.mailBatchServiceContract = mailBatchServiceContract;
+        this.mailChunkSize = mailChunkSize;
+        this.notificationQueue = notificationQueue;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        this.queueMode = queueMode;
+        this.reservationPairIndexServiceContract = reservationPairIndexServiceContract;
+        this.queueViewServiceContract = queueViewServiceContract;
+        this.customerReservationCacheServiceContract = customerReservationCacheServiceContract;
     }
 
 
     @Override
     public List<Reservation> findAll() {
-        return reservationRepository.findAll();
+        return withQueuePositions(reservationRepository.findAll());
+    }
+
+    @Override
+    public ReservationPage findPage(String cursor, Integer size, ReservationFilter reservationFilter, boolean count) {
+        int pageSize = size == null ? defaultPageSize : size;
+        if (pageSize < 1 || pageSize > maxPageSize){
+            throw new BadRequestException("The page size must be between 1 and " + maxPageSize);
+        }
+        //one more reservation is read to know if there is a next page
+        Integer afterId = HandlerCursor.decode(cursor);
+        List<Reservation> reservations = reservationRepository.findPage(afterId, pageSize + 1, reservationFilter);
+        //on demand only: the count reads all the reservations matching the filters, not just the page
+        Long totalCount = count ? reservationRepository.countByFilter(reservationFilter) : null;
+        if (reservations.size() <= pageSize){
+            return new ReservationPage(withQueuePositions(reservations), null, totalCount);
+        }
+        List<Reservation> content = withQueuePositions(new ArrayList<>(reservations.subList(0, pageSize)));
+        return new ReservationPage(content, HandlerCursor.encode(content.get(pageSize - 1).getId()), totalCount);
     }
 
     @Override
@@ -50,124 +138,213 @@ public class ReservationServiceImpl implements ReservationServiceContract {
         if (!optionalReservation.isPresent()){
             throw new ReservationNotFoundException(NOT_FOUND_MSG);
         }
+        withQueuePositions(Collections.singletonList(optionalReservation.get()));
         return optionalReservation.get();
     }
 
     @Override
+    @Transactional
     public Reservation save(Reservation reservation, List<LocalDate> listReturnLoanDate, Integer numberOfCopies, Integer copiesAvailable) {
 
-        //check if the customer already had a reservation
-        Reservation reservationInBdd = reservationRepository.findByCustomerIdAndBookId(reservation.getCustomerId(), reservation.getBookId());
-        if (reservationInBdd != null){
+        //check if the customer already had a reservation, the database is only read when the pair is in the index
+        if (reservationPairIndexServiceContract.exists(reservation.getCustomerId(), reservation.getBookId(),
+                () -> reservationRepository.findByCustomerIdAndBookId(reservation.getCustomerId(), reservation.getBookId()) != null)){
             throw new ReservationAlreadyExistException(ALREADY_RESERVED_MSG);
         }
-        //get all the reservation for the book to know the position in the list
-        List<Reservation> reservations = reservationRepository.findAllByBookId(reservation.getBookId());
+        //reservation to save
+        Reservation reservationToSave = buildReservationToSave(reservation);
+
+        //position taken atomically in the queue head of the book: concurrent reservations get different positions
+        Integer position = reservationJdbcRepository.allocatePosition(reservation.getBookId());
         //set last position in the reservation list
-        Integer lastPosition;
+        Integer lastPosition = position - 1;
 
-        //reservation to save
-        Reservation reservationToSave = new Reservation();
-        reservationToSave.setCreationReservationDate(LocalDateTime.now());
-        reservationToSave.setCustomerId(reservation.getCustomerId());
-        reservationToSave.setCustomerEmail(reservation.getCustomerEmail());
-        reservationToSave.setCustomerFirstname(reservation.getCustomerFirstname());
-        reservationToSave.setCustomerLastname(reservation.getCustomerLastname());
-        reservationToSave.setBookId(reservation.getBookId());
-        reservationToSave.setBookTitle(reservation.getBookTitle());
+        reservationToSave.setPosition(position);
 
-        //no reservation
-        if (reservations.isEmpty()) {
-            lastPosition = 0;
-        } else {
-            lastPosition = reservations.size();
+        LocalDate lastEndOfPriority = copiesAvailable > 0 && lastPosition > 0 ? reservationRepository.findLastEndOfPriority(reservation.getBookId()) : null;
+        if (!setQueueDates(reservationToSave, lastPosition, lastEndOfPriority, listReturnLoanDate, copiesAvailable)){
+            throw new ReservationNotAllowedException(RESERVATION_NOT_ALLOWED_MSG);
+        }
+        if (copiesAvailable > 0){
+            notifyAvailable(reservationToSave);
+        }
+        Reservation savedReservation = reservationRepository.save(reservationToSave);
+        try {
+            reservationRepository.flush();
+        } catch (DataIntegrityViolationException ex) {
+            //unique (customer_id, book_id): created meanwhile, by another request or instance
+            throw new ReservationAlreadyExistException(ALREADY_RESERVED_MSG);
         }
+        reservationPairIndexServiceContract.addAfterCommit(reservationToSave.getCustomerId(), reservationToSave.getBookId());
+        queueViewServiceContract.insertAfterCommit(reservationToSave);
+        //added at the end of the queue: the positions and dates of the other customers do not change
+        customerReservationCacheServiceContract.evictCustomersAfterCommit(Collections.singletonList(reservationToSave.getCustomerId()));
+        //when the book is available today the mail has just been sent
+        if (reservationToSave.getSoonDisponibilityDate().isAfter(LocalDate.now())){
+            notificationQueue.schedule(reservationToSave.getId(), reservationToSave.getSoonDisponibilityDate());
+        }
+        return savedReservation;
+    }
 
-        reservationToSave.setPosition(lastPosition + 1);
 
-        //copies available
-        if (copiesAvailable > 0) {
-            if (reservations.isEmpty()){
-                //soon disponibility
-                reservationToSave.setSoonDisponibilityDate(LocalDate.now());
-                //end priority
-                if ((LocalDate.now().getDayOfWeek() == DayOfWeek.FRIDAY)
-                            || (LocalDate.now().getDayOfWeek() == DayOfWeek.SATURDAY)) {
-                    reservationToSave.setEndOfPriority(LocalDate.now().plusDays(3));
-                } else {
-                    reservationToSave.setEndOfPriority(LocalDate.now().plusDays(2));
-                }
+
+    @Override
+    @Transactional
+    public ReservationImportReport importReservations(List<Reservation> reservations, Map<Integer, ReservationCheck> reservationCheckByBookId) {
+        ReservationImportResult[] results = new ReservationImportResult[reservations.size()];
+        //indexes of the reservations of each book, in the order of the request
+        Map<Integer, List<Integer>> indexesByBookId = new LinkedHashMap<>();
+        for (int i = 0; i < reservations.size(); i++) {
+            Reservation reservation = reservations.get(i);
+            if (reservation == null || reservation.getCustomerId() == null || reservation.getBookId() == null){
+                results[i] = new ReservationImportResult(i, reservation == null ? null : reservation.getCustomerId(),
+                        reservation == null ? null : reservation.getBookId(), ImportStatus.INVALID, null, null);
             } else {
-                reservationToSave.setSoonDisponibilityDate(reservations.get(reservations.size() - 1).getEndOfPriority());
-                //end priority
-                if ((LocalDate.now().getDayOfWeek() == DayOfWeek.FRIDAY)
-                            || (LocalDate.now().getDayOfWeek() == DayOfWeek.SATURDAY)) {
-                    reservationToSave.setEndOfPriority(reservations.get(reservations.size() - 1).getEndOfPriority().plusDays(3));
-                } else {
-                    reservationToSave.setEndOfPriority(reservations.get(reservations.size() - 1).getEndOfPriority().plusDays(2));
-                }
+                indexesByBookId.computeIfAbsent(reservation.getBookId(), bookId -> new ArrayList<>()).add(i);
             }
-            //send mail
-            //uncomment before release
-            sendPreConfiguredMail(
-                    reservationToSave.getCustomerEmail(),
-                    reservationToSave.getCustomerFirstname(),
-                    reservationToSave.getCustomerLastname(),
-                    formatDateTimeToMail(reservationToSave.getCreationReservationDate()),
-                    reservationToSave.getBookTitle(),
-                    formatDateToMail(reservationToSave.getEndOfPriority()));
-        } else {
-            if (!listReturnLoanDate.isEmpty()){
-                //soon disponibility
-                if (lastPosition == 0){
-                    reservationToSave.setSoonDisponibilityDate(listReturnLoanDate.get(lastPosition));
-                    reservationToSave.setEndOfPriority(listReturnLoanDate.get(lastPosition).plusDays(2));
-                } else {
-                    reservationToSave.setSoonDisponibilityDate(listReturnLoanDate.get(lastPosition - 1));
-                    //end priority A VOIR
-                    reservationToSave.setEndOfPriority(listReturnLoanDate.get(lastPosition - 1).plusDays(2));
+        }
+        if (indexesByBookId.isEmpty()){
+            return buildImportReport(results);
+        }
+
+        //customers already in the queue of the books, read in one query
+        Map<Integer, Set<Integer>> customerIdsByBookId = new HashMap<>();
+        for (Reservation reservation : reservationRepository.findAllByBookIdIn(indexesByBookId.keySet())){
+            customerIdsByBookId.computeIfAbsent(reservation.getBookId(), bookId -> new HashSet<>()).add(reservation.getCustomerId());
+        }
+
+        List<Reservation> reservationsToSave = new ArrayList<>();
+        List<Integer> savedIndexes = new ArrayList<>();
+        indexesByBookId.forEach((bookId, indexes) -> {
+            ReservationCheck reservationCheck = reservationCheckByBookId.get(bookId);
+            Set<Integer> customerIds = customerIdsByBookId.computeIfAbsent(bookId, id -> new HashSet<>());
+            //lock the queue head of the book, the positions and dates are then computed in memory
+            int lastPosition = reservationJdbcRepository.allocatePositions(bookId, 0);
+            LocalDate lastEndOfPriority = reservationCheck.getCopiesAvailable() > 0 && lastPosition > 0 ? reservationRepository.findLastEndOfPriority(bookId) : null;
+            int created = 0;
+            for (Integer index : indexes){
+                Reservation reservation = reservations.get(index);
+                if (!customerIds.add(reservation.getCustomerId())){
+                    results[index] = new ReservationImportResult(index, reservation.getCustomerId(), bookId, ImportStatus.ALREADY_EXIST, null, null);
+                    continue;
                 }
-            } else {
-                throw new ReservationNotAllowedException(RESERVATION_NOT_ALLOWED_MSG);
+                Reservation reservationToSave = buildReservationToSave(reservation);
+                reservationToSave.setPosition(lastPosition + created + 1);
+                if (!setQueueDates(reservationToSave, lastPosition + created, lastEndOfPriority,
+                        reservationCheck.getListReturnLoanDate(), reservationCheck.getCopiesAvailable())){
+                    customerIds.remove(reservation.getCustomerId());
+                    results[index] = new ReservationImportResult(index, reservation.getCustomerId(), bookId, ImportStatus.NOT_ALLOWED, null, null);
+                    continue;
+                }
+                if (reservationCheck.getCopiesAvailable() > 0){
+                    notifyAvailable(reservationToSave);
+                    lastEndOfPriority = reservationToSave.getEndOfPriority();
+                }
+                created++;
+                reservationsToSave.add(reservationToSave);
+                savedIndexes.add(index);
+            }
+            if (created > 0){
+                reservationJdbcRepository.allocatePositions(bookId, created);
+            }
+        });
+
+        //inserted by JDBC batches, the ids come from the pooled sequence
+        reservationRepository.saveAll(reservationsToSave);
+        customerReservationCacheServiceContract.evictCustomersAfterCommit(
+                reservationsToSave.stream().map(Reservation::getCustomerId).collect(Collectors.toSet()));
+        for (int i = 0; i < reservationsToSave.size(); i++) {
+            Reservation savedReservation = reservationsToSave.get(i);
+            int index = savedIndexes.get(i);
+            results[index] = new ReservationImportResult(index, savedReservation.getCustomerId(), savedReservation.getBookId(),
+                    ImportStatus.CREATED, savedReservation.getId(), savedReservation.getPosition());
+            reservationPairIndexServiceContract.addAfterCommit(savedReservation.getCustomerId(), savedReservation.getBookId());
+            queueViewServiceContract.insertAfterCommit(savedReservation);
+            if (savedReservation.getSoonDisponibilityDate().isAfter(LocalDate.now())){
+                notificationQueue.schedule(savedReservation.getId(), savedReservation.getSoonDisponibilityDate());
             }
         }
-        return reservationRepository.save(reservationToSave);
+        return buildImportReport(results);
     }
 
+    @Override
+    @Transactional
+    public NotificationReport updateReservationsAndSendMail() {
+        LocalDate today = LocalDate.now();
+        NotificationReport notificationReport = new NotificationReport();
+        notificationReport.setSkipped(reservationRepository.countAlreadyNotified(today));
+        //only the reservations to notify today are read, as a cursor, and the persistence context
+        //is cleared after each chunk: the memory used does not depend on the size of the table
+        Map<SimpleMailMessage, Integer> reservationIdByMail = new IdentityHashMap<>();
+        try (Stream<Reservation> reservations = reservationRepository.streamNotificationsToSend(today)) {
+            reservations.forEach(reservation -> {
+                reservationIdByMail.put(buildAvailabilityMail(reservation), reservation.getId());
+                if (reservationIdByMail.size() == mailChunkSize){
+                    sendAndMarkNotified(reservationIdByMail, today, notificationReport);
+                    entityManager.clear();
+                }
+            });
+        }
+        sendAndMarkNotified(reservationIdByMail, today, notificationReport);
+        return notificationReport;
+    }
 
+    @Override
+    @Transactional(readOnly = true)
+    public Map<Integer, LocalDate> findUpcomingNotifications(LocalDate from) {
+        Map<Integer, LocalDate> schedules = new HashMap<>();
+        try (Stream<ReservationSchedule> reservationSchedules = reservationRepository.streamAllBySoonDisponibilityDateGreaterThanEqual(from)) {
+            reservationSchedules.forEach(schedule -> schedules.put(schedule.getId(), schedule.getSoonDisponibilityDate()));
+        }
+        return schedules;
+    }
 
     @Override
-    public void updateReservationsAndSendMail() {
-        List<Reservation> reservations = reservationRepository.findAll();
-        for (Reservation reservation : reservations){
-            if(reservation.getSoonDisponibilityDate().compareTo(LocalDate.now()) == 0){
-                sendPreConfiguredMail(
-                        reservation.getCustomerEmail(),
-                        reservation.getCustomerFirstname(),
-                        reservation.getCustomerLastname(),
-                        formatDateTimeToMail(reservation.getCreationReservationDate()),
-                        reservation.getBookTitle(),
-                        formatDateToMail(reservation.getEndOfPriority()));
+    @Transactional
+    public NotificationReport sendAvailabilityMails(List<Integer> reservationIds) {
+        LocalDate today = LocalDate.now();
+        NotificationReport notificationReport = new NotificationReport();
+        for (int from = 0; from < reservationIds.size(); from += mailChunkSize) {
+            Map<SimpleMailMessage, Integer> reservationIdByMail = new IdentityHashMap<>();
+            for (Reservation reservation : reservationRepository.findAllByIdFromDatabase(reservationIds.subList(from, Math.min(from + mailChunkSize, reservationIds.size())))){
+                //the date may have been moved, or the mail sent, by another instance since the notification was planned
+                if (reservation.getSoonDisponibilityDate().isAfter(today)){
+                    notificationQueue.schedule(reservation.getId(), reservation.getSoonDisponibilityDate());
+                } else if (Objects.equals(reservation.getNotifiedEndOfPriority(), reservation.getEndOfPriority())){
+                    notificationReport.setSkipped(notificationReport.getSkipped() + 1);
+                } else {
+                    reservationIdByMail.put(buildAvailabilityMail(reservation), reservation.getId());
+                }
             }
+            sendAndMarkNotified(reservationIdByMail, today, notificationReport);
+            entityManager.clear();
         }
+        return notificationReport;
     }
 
     @Override
+    @Transactional
     public void updateDateResaBookId(Integer bookId, List<LocalDate> listReturnLoanDate) {
-        List<Reservation> reservations = reservationRepository.findAllByBookId(bookId);
+        List<Reservation> reservations = reservationRepository.findAllByBookIdForUpdate(bookId);
         if (reservations.isEmpty()){
             return;
         }
-        reservations.sort(Comparator.comparing(Reservation::getPosition));
+        reservations.sort(queueMode.getQueueOrder());
         //change soon to return date
+        List<Integer> reservationIds = new ArrayList<>(reservations.size());
         for (int i = 0; i < reservations.size(); i++) {
             reservations.get(i).setSoonDisponibilityDate(listReturnLoanDate.get(i));
+            reservationIds.add(reservations.get(i).getId());
+            notificationQueue.schedule(reservations.get(i).getId(), listReturnLoanDate.get(i));
         }
+        queueViewServiceContract.updateDatesAfterCommit(bookId, reservationIds, listReturnLoanDate.subList(0, reservations.size()), null);
+        customerReservationCacheServiceContract.evictBookAfterCommit(bookId);
     }
 
     @Override
+    @Transactional
     public void delete(Integer reservationId, List<LocalDate> listReturnLoanDate) {
-        Optional<Reservation> optionalReservation = reservationRepository.findById(reservationId);
+        Optional<Reservation> optionalReservation = reservationRepository.findByIdForUpdate(reservationId);
         if (!optionalReservation.isPresent()){
             throw new ReservationNotFoundException(NOT_FOUND_MSG);
         }
@@ -176,81 +353,292 @@ public class ReservationServiceImpl implements ReservationServiceContract {
 
         //delete
         reservationRepository.deleteById(reservationId);
-
-        //modify list resa
-        //get new list of all reservations for the book
-        List<Reservation> reservations = reservationRepository.findAllByBookId(reservationToDelete.getBookId());
+        reservationPairIndexServiceContract.removeAfterCommit(reservationToDelete.getCustomerId(), reservationToDelete.getBookId());
+        queueViewServiceContract.removeAfterCommit(reservationToDelete.getBookId(), reservationId);
+        //the customers behind in the queue get new positions and dates
+        customerReservationCacheServiceContract.evictBookAfterCommit(reservationToDelete.getBookId());
+        reservationJdbcRepository.releasePosition(reservationToDelete.getBookId());
+        notificationQueue.cancel(reservationId);
+
+        List<Integer> reservationIds;
+        if (queueMode == QueueMode.TIMESTAMP){
+            //the order does not change, the positions are computed when reading
+            reservationIds = reservationRepository.findIdsByBookIdOrderByCreation(reservationToDelete.getBookId());
+        } else {
+            //move up the reservations behind the deleted one
+            reservationRepository.shiftPositionsAfter(reservationToDelete.getBookId(), reservationToDelete.getPosition());
+            reservationIds = reservationRepository.findIdsByBookIdOrderByPosition(reservationToDelete.getBookId());
+        }
 
         //on regarde si la liste de réservation n'est pas vide sinon on ne fait rien.
-        if (!reservations.isEmpty()){
-            //set last position in the reservation list
-            Integer deleteReservationPosition = reservationToDelete.getPosition();
-
-            //change all position
-            for (Reservation reservation : reservations){
-                if (reservation.getPosition() > deleteReservationPosition){
-                    reservation.setPosition(reservation.getPosition() - 1);
-                }
-            }
-            reservations.sort(Comparator.comparing(Reservation::getPosition));
-
+        if (!reservationIds.isEmpty()){
+            List<LocalDate> soonDisponibilityDates = new ArrayList<>(reservationIds.size());
+            List<LocalDate> endOfPriorities = null;
             //no loan
             if (listReturnLoanDate.isEmpty()){
-                for (int i = 0; i < reservations.size(); i++) {
-                    reservations.get(i).setSoonDisponibilityDate(LocalDate.now().plusDays(2*i));
-                    reservations.get(i).setEndOfPriority(LocalDate.now().plusDays(2+(2*i)));
+                endOfPriorities = new ArrayList<>(reservationIds.size());
+                for (int i = 0; i < reservationIds.size(); i++) {
+                    soonDisponibilityDates.add(LocalDate.now().plusDays(2*i));
+                    endOfPriorities.add(LocalDate.now().plusDays(2+(2*i)));
                 }
             //with loan
             } else {
                 //change soon to return date
-                for (int i = 0; i < reservations.size(); i++) {
-                    reservations.get(i).setSoonDisponibilityDate(listReturnLoanDate.get(i));
+                for (int i = 0; i < reservationIds.size(); i++) {
+                    soonDisponibilityDates.add(listReturnLoanDate.get(i));
                 }
             }
-            reservationRepository.saveAll(reservations);
+            reservationJdbcRepository.updateDates(reservationIds, soonDisponibilityDates, endOfPriorities);
+            queueViewServiceContract.updateDatesAfterCommit(reservationToDelete.getBookId(), reservationIds, soonDisponibilityDates, endOfPriorities);
+            for (int i = 0; i < reservationIds.size(); i++) {
+                notificationQueue.schedule(reservationIds.get(i), soonDisponibilityDates.get(i));
+            }
         }
     }
 
     @Override
     public List<Reservation> findAllByCustomerId(Integer customerId) {
-        return reservationRepository.findAllByCustomerId(customerId);
+        return customerReservationCacheServiceContract.get(customerId,
+                id -> withQueuePositions(reservationRepository.findAllByCustomerId(id)));
     }
 
     @Override
     public List<Reservation> findAllByBookId(Integer bookId) {
-        return reservationRepository.findAllByBookId(bookId);
+        //served by the queue view, the database is only read until the view is built
+        List<Reservation> queue = queueViewServiceContract.findQueue(bookId);
+        if (queue != null){
+            return queue;
+        }
+        return withQueuePositions(reservationRepository.findAllByBookId(bookId));
     }
 
 
+    @Override
+    public Map<Integer, List<Reservation>> findAllByCustomerIds(Collection<Integer> customerIds) {
+        if (customerIds.isEmpty()){
+            return Collections.emptyMap();
+        }
+        return groupById(customerIds, withQueuePositions(reservationRepository.findAllByCustomerIdIn(customerIds)), Reservation::getCustomerId);
+    }
+
+    @Override
+    public Map<Integer, List<Reservation>> findAllByBookIds(Collection<Integer> bookIds) {
+        if (bookIds.isEmpty()){
+            return Collections.emptyMap();
+        }
+        Map<Integer, List<Reservation>> queues = new LinkedHashMap<>();
+        for (Integer bookId : bookIds){
+            List<Reservation> queue = queueViewServiceContract.findQueue(bookId);
+            if (queue == null){
+                queues = null;
+                break;
+            }
+            queues.put(bookId, queue);
+        }
+        if (queues != null){
+            return queues;
+        }
+        List<Reservation> reservations = withQueuePositions(reservationRepository.findAllByBookIdIn(bookIds));
+        reservations.sort(Comparator.comparing(Reservation::getPosition, Comparator.nullsLast(Comparator.naturalOrder())));
+        return groupById(bookIds, reservations, Reservation::getBookId);
+    }
+
     @Override
     public boolean checkIfReservationExistForCustomerIdAndBookId(Integer customerId, Integer bookId) {
+        //not answered by the pair index: it misses the reservations made by the other instances since its last rebuild
         return reservationRepository.existByCustomerIdAndBookId(customerId, bookId);
     }
 
+    @Override
+    public boolean[] checkIfReservationsExist(List<ReservationKey> reservationKeys) {
+        boolean[] exist = new boolean[reservationKeys.size()];
+        if (reservationKeys.isEmpty()){
+            return exist;
+        }
+        Integer[] customerIds = new Integer[reservationKeys.size()];
+        Integer[] bookIds = new Integer[reservationKeys.size()];
+        for (int i = 0; i < reservationKeys.size(); i++) {
+            customerIds[i] = reservationKeys.get(i).getCustomerId();
+            bookIds[i] = reservationKeys.get(i).getBookId();
+        }
+        reservationJdbcRepository.findExistingPairs(customerIds, bookIds).forEach(index -> exist[index] = true);
+        return exist;
+    }
+
     @Override
     public Reservation findByCustomerIdAndBookId(Integer customerId, Integer bookId) {
         Reservation reservation = reservationRepository.findByCustomerIdAndBookId(customerId, bookId);
         if (reservation == null){
             throw new ReservationNotFoundException(NOT_FOUND_MSG);
         }
+        withQueuePositions(Collections.singletonList(reservation));
         return reservation;
     }
 
     /**
-     * This method will send a pre-configured message
+     * This method copy the customer and the book of the requested reservation in a new reservation
+     * @param reservation the requested reservation
+     * @return the reservation to save, created now
+     */
+    private Reservation buildReservationToSave(Reservation reservation){
+        Reservation reservationToSave = new Reservation();
+        reservationToSave.setCreationReservationDate(LocalDateTime.now());
+        reservationToSave.setCustomerId(reservation.getCustomerId());
+        reservationToSave.setCustomerEmail(reservation.getCustomerEmail());
+        reservationToSave.setCustomerFirstname(reservation.getCustomerFirstname());
+        reservationToSave.setCustomerLastname(reservation.getCustomerLastname());
+        reservationToSave.setBookId(reservation.getBookId());
+        reservationToSave.setBookTitle(reservation.getBookTitle());
+        return reservationToSave;
+    }
+
+    /**
+     * This method set the soon disponibility date and the end of priority of a new reservation
+     * @param reservationToSave the new reservation
+     * @param lastPosition the number of reservations before it in the queue
+     * @param lastEndOfPriority the end of priority of the last reservation of the queue, null if unknown
+     * @param listReturnLoanDate the return dates of the loans of the book
+     * @param copiesAvailable the number of copies available
+     * @return false if the reservation is not allowed: no copy available and no loan to wait for
+     */
+    private boolean setQueueDates(Reservation reservationToSave, Integer lastPosition, LocalDate lastEndOfPriority,
+                                  List<LocalDate> listReturnLoanDate, Integer copiesAvailable){
+        //copies available
+        if (copiesAvailable > 0) {
+            //soon disponibility
+            LocalDate soonDisponibilityDate = lastEndOfPriority == null ? LocalDate.now() : lastEndOfPriority;
+            reservationToSave.setSoonDisponibilityDate(soonDisponibilityDate);
+            //end priority
+            if ((LocalDate.now().getDayOfWeek() == DayOfWeek.FRIDAY)
+                        || (LocalDate.now().getDayOfWeek() == DayOfWeek.SATURDAY)) {
+                reservationToSave.setEndOfPriority(soonDisponibilityDate.plusDays(3));
+            } else {
+                reservationToSave.setEndOfPriority(soonDisponibilityDate.plusDays(2));
+            }
+            return true;
+        }
+        int index = lastPosition == 0 ? 0 : lastPosition - 1;
+        if (index >= listReturnLoanDate.size()){
+            return false;
+        }
+        //soon disponibility
+        reservationToSave.setSoonDisponibilityDate(listReturnLoanDate.get(index));
+        //end priority A VOIR
+        reservationToSave.setEndOfPriority(listReturnLoanDate.get(index).plusDays(2));
+        return true;
+    }
+
+    /**
+     * This method send the mail telling the customer that the book is available,
+     * through the outbox: it is written in the same transaction as the reservation
+     * @param reservationToSave the new reservation
+     */
+    private void notifyAvailable(Reservation reservationToSave){
+        reservationToSave.setNotifiedDate(LocalDate.now());
+        reservationToSave.setNotifiedEndOfPriority(reservationToSave.getEndOfPriority());
+        mailOutboxServiceContract.enqueue(buildPreConfiguredMail(
+                reservationToSave.getCustomerEmail(),
+                reservationToSave.getCustomerFirstname(),
+                reservationToSave.getCustomerLastname(),
+                formatDateTimeToMail(reservationToSave.getCreationReservationDate()),
+                reservationToSave.getBookTitle(),
+                formatDateToMail(reservationToSave.getEndOfPriority())));
+    }
+
+    /**
+     * This method group the reservations by customer or book
+     * @param ids the requested ids, each of them is in the result even without reservation
+     * @param reservations the reservations of the ids
+     * @param idOfReservation the id to group by
+     * @return the reservations by id, in the order of the requested ids
+     */
+    private Map<Integer, List<Reservation>> groupById(Collection<Integer> ids, List<Reservation> reservations, Function<Reservation, Integer> idOfReservation){
+        Map<Integer, List<Reservation>> reservationsById = new LinkedHashMap<>();
+        ids.forEach(id -> reservationsById.put(id, new ArrayList<>()));
+        reservations.forEach(reservation -> reservationsById.get(idOfReservation.apply(reservation)).add(reservation));
+        return reservationsById;
+    }
+
+    private ReservationImportReport buildImportReport(ReservationImportResult[] results){
+        long created = Arrays.stream(results).filter(result -> result.getStatus() == ImportStatus.CREATED).count();
+        return new ReservationImportReport(created, results.length - created, Arrays.asList(results));
+    }
+
+    /**
+     * This method set the position computed from the creation dates when the queue is ordered by timestamp.
+     * The reservations are detached first: the computed position must not be written back to the database.
+     * @param reservations the reservations to return
+     * @return the same reservations
+     */
+    private List<Reservation> withQueuePositions(List<Reservation> reservations){
+        if (queueMode != QueueMode.TIMESTAMP || reservations.isEmpty()){
+            return reservations;
+        }
+        Set<Integer> bookIds = new HashSet<>();
+        reservations.forEach(reservation -> bookIds.add(reservation.getBookId()));
+        Map<Integer, Integer> positions = reservationJdbcRepository.findQueuePositions(bookIds);
+        for (Reservation reservation : reservations){
+            entityManager.detach(reservation);
+            reservation.setPosition(positions.get(reservation.getId()));
+        }
+        return reservations;
+    }
+
+    /**
+     * This method send the mails and save that the reservations were notified for their current end of priority
+     * @param reservationIdByMail the mails to send, with the id of their reservation (cleared once sent)
+     * @param today the notification date
+     * @param notificationReport the report to update
+     */
+    private void sendAndMarkNotified(Map<SimpleMailMessage, Integer> reservationIdByMail, LocalDate today, NotificationReport notificationReport){
+        if (reservationIdByMail.isEmpty()){
+            return;
+        }
+        Map<SimpleMailMessage, Exception> failedMails = mailBatchServiceContract.sendAll(new ArrayList<>(reservationIdByMail.keySet()));
+        List<Integer> notifiedReservationIds = new ArrayList<>();
+        reservationIdByMail.forEach((mail, reservationId) -> {
+            if (!failedMails.containsKey(mail)){
+                notifiedReservationIds.add(reservationId);
+            }
+        });
+        if (!notifiedReservationIds.isEmpty()){
+            reservationRepository.markNotified(notifiedReservationIds, today);
+        }
+        notificationReport.setSent(notificationReport.getSent() + notifiedReservationIds.size());
+        notificationReport.setFailed(notificationReport.getFailed() + failedMails.size());
+        reservationIdByMail.clear();
+    }
+
+    /**
+     * This method build the message telling the customer that the book is available
+     * @param reservation the reservation of the customer
+     * @return the message to send
+     */
+    private SimpleMailMessage buildAvailabilityMail(Reservation reservation){
+        return buildPreConfiguredMail(
+                reservation.getCustomerEmail(),
+                reservation.getCustomerFirstname(),
+                reservation.getCustomerLastname(),
+                formatDateTimeToMail(reservation.getCreationReservationDate()),
+                reservation.getBookTitle(),
+                formatDateToMail(reservation.getEndOfPriority()));
+    }
+
+    /**
+     * This method build a pre-configured message
      * @param argTo the email of the recipient
      * @param argFirst the firstName of the recipient
      * @param argLast the lastName of the recipient
      * @param argTitle the title of the book
      * @param date the date of the expected return
-     *
+     * @return the message to send
      * */
-    private void sendPreConfiguredMail(String argTo, String argFirst, String argLast, String resaDate, String argTitle, String date){
+    private SimpleMailMessage buildPreConfiguredMail(String argTo, String argFirst, String argLast, String resaDate, String argTitle, String date){
         SimpleMailMessage mailMessage = new SimpleMailMessage(preConfiguredMessage);
         String text = String.format(Objects.requireNonNull(mailMessage.getText()),argFirst, argLast, resaDate, argTitle, date);
         mailMessage.setTo(argTo);
         mailMessage.setText(text);
-        javaMailSender.send(mailMessage);
+        return mailMessage;
     }
 
 
@@ -0,0 +1,33 @@
+package org.mickael.librarymsreservation.utils;
+
+import lombok.experimental.UtilityClass;
+import org.mickael.librarymsreservation.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+@UtilityClass
+public class HandlerCursor {
+
+    private static final String CURSOR_PREFIX = "id:";
+
+    public String encode(Integer lastId){
+        return Base64.getUrlEncoder().withoutPadding()
+                     .encodeToString((CURSOR_PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public Integer decode(String cursor){
+        if (cursor == null || cursor.isEmpty()){
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!decoded.startsWith(CURSOR_PREFIX)){
+                throw new BadRequestException("Invalid cursor");
+            }
+            return Integer.valueOf(decoded.substring(CURSOR_PREFIX.length()));
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+}
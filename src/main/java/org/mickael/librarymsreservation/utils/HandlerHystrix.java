@@ -0,0 +1,28 @@
+package org.mickael.librarymsreservation.utils;
+
+import com.netflix.hystrix.exception.HystrixBadRequestException;
+import com.netflix.hystrix.exception.HystrixRuntimeException;
+import lombok.experimental.UtilityClass;
+import org.mickael.librarymsreservation.exception.ServiceUnavailableException;
+
+import java.util.function.Supplier;
+
+@UtilityClass
+public class HandlerHystrix {
+
+    private static final String UNAVAILABLE_MSG = "Remote service unavailable";
+
+    /**
+     * Call a Feign proxy and rethrow the exception of the error decoder for a 4xx,
+     * and a ServiceUnavailableException when the call and its fallback failed.
+     */
+    public <T> T call(Supplier<T> call){
+        try {
+            return call.get();
+        } catch (HystrixBadRequestException ex) {
+            throw ex.getCause() instanceof RuntimeException ? (RuntimeException) ex.getCause() : ex;
+        } catch (HystrixRuntimeException ex) {
+            throw new ServiceUnavailableException(UNAVAILABLE_MSG, ex);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.mickael.librarymsreservation.utils;
+
+import lombok.experimental.UtilityClass;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@UtilityClass
+public class HandlerTransaction {
+
+    /**
+     * Run once the current transaction is committed, nothing is run on rollback.
+     * Without transaction, run now.
+     */
+    public void afterCommit(Runnable runnable){
+        if (TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    runnable.run();
+                }
+            });
+        } else {
+            runnable.run();
+        }
+    }
+}
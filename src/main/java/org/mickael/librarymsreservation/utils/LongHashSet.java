@@ -0,0 +1,133 @@
+package org.mickael.librarymsreservation.utils;
+
+import java.util.Arrays;
+
+/**
+ * Set of primitive longs, open addressing with linear probing: 8 bytes per slot and no boxing.
+ * Not thread safe.
+ */
+public class LongHashSet {
+
+    private static final long EMPTY = 0L;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private int mask;
+    private int size;
+    //0 is the marker of an empty slot, it is kept aside
+    private boolean containsEmptyKey;
+
+    public LongHashSet(int expectedSize){
+        int capacity = MIN_CAPACITY;
+        //at most half full
+        while (capacity < expectedSize * 2L){
+            capacity <<= 1;
+        }
+        keys = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    public boolean add(long key){
+        if (key == EMPTY){
+            boolean added = !containsEmptyKey;
+            containsEmptyKey = true;
+            return added;
+        }
+        int slot = slot(key);
+        while (keys[slot] != EMPTY){
+            if (keys[slot] == key){
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        if (++size * 2 > keys.length){
+            resize(keys.length << 1);
+        }
+        return true;
+    }
+
+    public boolean contains(long key){
+        if (key == EMPTY){
+            return containsEmptyKey;
+        }
+        return find(key) >= 0;
+    }
+
+    public boolean remove(long key){
+        if (key == EMPTY){
+            boolean removed = containsEmptyKey;
+            containsEmptyKey = false;
+            return removed;
+        }
+        int slot = find(key);
+        if (slot < 0){
+            return false;
+        }
+        //move back the keys of the same run which can no longer be found past the hole
+        int next = slot;
+        while (true){
+            next = (next + 1) & mask;
+            if (keys[next] == EMPTY){
+                break;
+            }
+            int home = slot(keys[next]);
+            boolean homeBetweenHoleAndNext = slot <= next ? (slot < home && home <= next) : (slot < home || home <= next);
+            if (!homeBetweenHoleAndNext){
+                keys[slot] = keys[next];
+                slot = next;
+            }
+        }
+        keys[slot] = EMPTY;
+        size--;
+        return true;
+    }
+
+    public int size(){
+        return containsEmptyKey ? size + 1 : size;
+    }
+
+    public void clear(){
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+        containsEmptyKey = false;
+    }
+
+    /**
+     * @return the size of the table of keys, in bytes
+     */
+    public long memoryBytes(){
+        return (long) keys.length * Long.BYTES;
+    }
+
+    private int find(long key){
+        int slot = slot(key);
+        while (keys[slot] != EMPTY){
+            if (keys[slot] == key){
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int slot(long key){
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void resize(int capacity){
+        long[] oldKeys = keys;
+        keys = new long[capacity];
+        mask = capacity - 1;
+        for (long key : oldKeys){
+            if (key != EMPTY){
+                int slot = slot(key);
+                while (keys[slot] != EMPTY){
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+            }
+        }
+    }
+}
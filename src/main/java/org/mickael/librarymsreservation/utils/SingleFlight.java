@@ -0,0 +1,64 @@
+package org.mickael.librarymsreservation.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Let only one call per key run at a time: the callers arriving while a call is
+ * in flight wait for it and share its result (or its exception).
+ *
+ * @param <K> the key identifying identical calls
+ * @param <V> the result of the call
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlightCalls = new ConcurrentHashMap<>();
+    private final LongAdder executedCalls = new LongAdder();
+    private final LongAdder coalescedCalls = new LongAdder();
+
+    public V execute(K key, Supplier<V> call){
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> inFlightCall = inFlightCalls.putIfAbsent(key, future);
+        if (inFlightCall != null){
+            coalescedCalls.increment();
+            return await(inFlightCall);
+        }
+        executedCalls.increment();
+        try {
+            V result = call.get();
+            future.complete(result);
+            return result;
+        } catch (RuntimeException | Error ex) {
+            future.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlightCalls.remove(key, future);
+        }
+    }
+
+    public long getExecutedCalls(){
+        return executedCalls.sum();
+    }
+
+    public long getCoalescedCalls(){
+        return coalescedCalls.sum();
+    }
+
+    private V await(CompletableFuture<V> inFlightCall){
+        try {
+            return inFlightCall.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException){
+                throw (RuntimeException) ex.getCause();
+            }
+            if (ex.getCause() instanceof Error){
+                throw (Error) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+}
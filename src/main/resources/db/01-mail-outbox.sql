@@ -0,0 +1,21 @@
+-- Outbox of the mails sent by the reservation service
+CREATE SEQUENCE IF NOT EXISTS public.mail_outbox_mail_outbox_id_seq;
+
+CREATE TABLE IF NOT EXISTS public.mail_outbox (
+    mail_outbox_id INTEGER NOT NULL DEFAULT nextval('public.mail_outbox_mail_outbox_id_seq'),
+    mail_from VARCHAR(255),
+    mail_to VARCHAR(255) NOT NULL,
+    subject VARCHAR(255),
+    body TEXT,
+    status VARCHAR(20) NOT NULL,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    next_attempt_date TIMESTAMP NOT NULL,
+    creation_date TIMESTAMP NOT NULL,
+    sent_date TIMESTAMP,
+    last_error VARCHAR(255),
+    CONSTRAINT mail_outbox_pk PRIMARY KEY (mail_outbox_id)
+);
+
+ALTER SEQUENCE public.mail_outbox_mail_outbox_id_seq OWNED BY public.mail_outbox.mail_outbox_id;
+
+CREATE INDEX IF NOT EXISTS mail_outbox_status_next_attempt_idx ON public.mail_outbox (status, next_attempt_date);
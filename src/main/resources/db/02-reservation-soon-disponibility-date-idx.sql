@@ -0,0 +1,2 @@
+-- Reservations available on a given day (daily notification)
+CREATE INDEX IF NOT EXISTS reservation_soon_disponibility_date_idx ON public.reservation (soon_disponibility_date);
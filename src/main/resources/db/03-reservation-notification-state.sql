@@ -0,0 +1,3 @@
+-- Last availability notification sent for a reservation
+ALTER TABLE public.reservation ADD COLUMN IF NOT EXISTS notified_date DATE;
+ALTER TABLE public.reservation ADD COLUMN IF NOT EXISTS notified_end_of_priority DATE;
@@ -0,0 +1,9 @@
+-- Order of the queue of a book when reservation.queue.mode=TIMESTAMP
+CREATE INDEX IF NOT EXISTS reservation_book_id_creation_idx
+    ON public.reservation (book_id, create_reservation_date, reservation_id);
+
+-- To run before going back to reservation.queue.mode=POSITION: the position column is not maintained in TIMESTAMP mode
+-- UPDATE public.reservation r SET position = q.queue_position
+-- FROM (SELECT reservation_id, row_number() OVER (PARTITION BY book_id ORDER BY create_reservation_date, reservation_id) AS queue_position
+--       FROM public.reservation) q
+-- WHERE r.reservation_id = q.reservation_id AND r.position IS DISTINCT FROM q.queue_position;
@@ -0,0 +1,12 @@
+-- Number of reservations in the queue of each book, positions are allocated with
+-- INSERT ... ON CONFLICT DO UPDATE ... RETURNING on this table
+CREATE TABLE IF NOT EXISTS public.reservation_queue_head (
+    book_id       INTEGER NOT NULL,
+    last_position INTEGER NOT NULL,
+    CONSTRAINT reservation_queue_head_pk PRIMARY KEY (book_id)
+);
+
+-- Initialization from the existing reservations
+INSERT INTO public.reservation_queue_head (book_id, last_position)
+SELECT book_id, count(*) FROM public.reservation GROUP BY book_id
+ON CONFLICT (book_id) DO UPDATE SET last_position = excluded.last_position;
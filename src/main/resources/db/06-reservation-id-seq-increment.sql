@@ -0,0 +1,3 @@
+-- The ids of the reservations are allocated by blocks of 50 (pooled-lo optimizer),
+-- to run before deploying the version with allocationSize = 50
+ALTER SEQUENCE public.reservation_reservation_id_seq INCREMENT BY 50;
@@ -0,0 +1,3 @@
+-- Lookups by customer and existence checks of (customer, book) pairs
+CREATE INDEX IF NOT EXISTS reservation_customer_id_book_id_idx
+    ON public.reservation (customer_id, book_id);
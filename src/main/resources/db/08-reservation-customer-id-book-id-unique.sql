@@ -0,0 +1,5 @@
+-- One reservation per customer and book, the in-memory pair index relies on it
+-- (check before: SELECT customer_id, book_id FROM public.reservation GROUP BY customer_id, book_id HAVING count(*) > 1)
+DROP INDEX IF EXISTS public.reservation_customer_id_book_id_idx;
+CREATE UNIQUE INDEX reservation_customer_id_book_id_idx
+    ON public.reservation (customer_id, book_id);
@@ -0,0 +1,2 @@
+-- Version of a reservation (Reservation.version), a flush of a reservation updated meanwhile fails
+ALTER TABLE public.reservation ADD COLUMN IF NOT EXISTS version INTEGER NOT NULL DEFAULT 0;
@@ -0,0 +1,156 @@
+package org.mickael.librarymsreservation.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import feign.Client;
+import feign.Feign;
+import feign.httpclient.ApacheHttpClient;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.mickael.librarymsreservation.proxy.FeignLoanProxy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.cloud.openfeign.support.ResponseEntityDecoder;
+import org.springframework.cloud.openfeign.support.SpringDecoder;
+import org.springframework.cloud.openfeign.support.SpringMvcContract;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Throughput of the soon returned call of FeignLoanProxy against a local stub of the loan service:
+ * HttpURLConnection (a connection by call once the JDK keep-alive cache of 5 connections is full)
+ * against the pooled Apache HttpClient, without content compression and with it (gzipped responses).
+ * The main method runs 1 to 16 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class FeignClientBenchmark {
+
+    private static final String TOKEN = "Bearer benchmark";
+    private static final int SOON_RETURNED_DATES = 200;
+
+    @Param({"default", "pooled", "pooled-gzip"})
+    private String client;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private CloseableHttpClient httpClient;
+    private FeignLoanProxy feignLoanProxy;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        byte[] body = soonReturnedBody();
+        byte[] gzippedBody = gzip(body);
+        serverExecutor = Executors.newFixedThreadPool(32);
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 256);
+        server.setExecutor(serverExecutor);
+        server.createContext("/api/loans/book/", exchange -> respond(exchange, body, gzippedBody));
+        server.start();
+
+        Feign.Builder builder = Feign.builder()
+                                     .contract(new SpringMvcContract())
+                                     .decoder(new ResponseEntityDecoder(new SpringDecoder(
+                                             () -> new HttpMessageConverters(new MappingJackson2HttpMessageConverter(new ObjectMapper().findAndRegisterModules())))));
+        if (client.startsWith("pooled")){
+            PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(60, TimeUnit.SECONDS);
+            connectionManager.setMaxTotal(100);
+            connectionManager.setDefaultMaxPerRoute(20);
+            HttpClientBuilder httpClientBuilder = HttpClients.custom().setConnectionManager(connectionManager);
+            if (!client.endsWith("gzip")){
+                //the content compression of the builder sends Accept-Encoding: gzip,deflate and inflates the answers
+                httpClientBuilder.disableContentCompression();
+            }
+            httpClient = httpClientBuilder.build();
+            builder.client(new ApacheHttpClient(httpClient));
+        } else {
+            builder.client(new Client.Default(null, null));
+        }
+        feignLoanProxy = builder.target(FeignLoanProxy.class, "http://localhost:" + server.getAddress().getPort());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (httpClient != null){
+            httpClient.close();
+        }
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public List<LocalDate> getSoonReturned() {
+        return feignLoanProxy.getSoonReturned(ThreadLocalRandom.current().nextInt(1000), TOKEN);
+    }
+
+    private static void respond(HttpExchange exchange, byte[] body, byte[] gzippedBody) throws IOException {
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        byte[] response = body;
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")){
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            response = gzippedBody;
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, response.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(response);
+        }
+    }
+
+    private static byte[] soonReturnedBody() {
+        LocalDate today = LocalDate.now();
+        return IntStream.range(0, SOON_RETURNED_DATES)
+                        .mapToObj(day -> "\"" + today.plusDays(day) + "\"")
+                        .collect(Collectors.joining(",", "[", "]"))
+                        .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream)) {
+            gzipOutputStream.write(body);
+        }
+        return outputStream.toByteArray();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{1, 4, 16}) {
+            new Runner(new OptionsBuilder().include(FeignClientBenchmark.class.getSimpleName()).threads(threads).build()).run();
+        }
+    }
+}
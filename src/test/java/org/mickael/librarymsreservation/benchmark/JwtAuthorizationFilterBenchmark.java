@@ -0,0 +1,135 @@
+package org.mickael.librarymsreservation.benchmark;
+
+import com.auth0.jwt.JWT;
+import org.mickael.librarymsreservation.security.JwtAuthorizationFilter;
+import org.mickael.librarymsreservation.security.JwtProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
+
+/**
+ * Cost of the authentication of a request carrying a bearer token through the filter, before (two verifications per request)
+ * and after (one verifier, and the authentication cached until the token expires).
+ *
+ * Run the main method, or after mvn test-compile: java -cp (test classpath) org.openjdk.jmh.Main JwtAuthorizationFilterBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtAuthorizationFilterBenchmark {
+
+    private String token;
+    private BaselineJwtAuthorizationFilter baselineJwtAuthorizationFilter;
+    private JwtAuthorizationFilter jwtAuthorizationFilter;
+    private final FilterChain filterChain = (request, response) -> { };
+
+    @Setup
+    public void setUp() {
+        token = JWT.create()
+                   .withSubject("mickael")
+                   .withClaim("authorities", "ROLE_USER,ROLE_ADMIN")
+                   .withExpiresAt(new Date(System.currentTimeMillis() + JwtProperties.EXPIRATION_TIME))
+                   .sign(HMAC512(JwtProperties.SECRET.getBytes()));
+        baselineJwtAuthorizationFilter = new BaselineJwtAuthorizationFilter(authentication -> authentication);
+        jwtAuthorizationFilter = new JwtAuthorizationFilter(authentication -> authentication);
+    }
+
+    @Benchmark
+    public Authentication before() throws IOException, ServletException {
+        return authenticate(baselineJwtAuthorizationFilter);
+    }
+
+    @Benchmark
+    public Authentication after() throws IOException, ServletException {
+        return authenticate(jwtAuthorizationFilter);
+    }
+
+    private Authentication authenticate(BasicAuthenticationFilter filter) throws IOException, ServletException {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(JwtProperties.HEADER_STRING, JwtProperties.TOKEN_PREFIX + token);
+        filter.doFilter(request, new MockHttpServletResponse(), filterChain);
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+
+    /**
+     * The filter before the verifier and the cache: two verifications of the token per request.
+     */
+    private static final class BaselineJwtAuthorizationFilter extends BasicAuthenticationFilter {
+
+        private BaselineJwtAuthorizationFilter(AuthenticationManager authenticationManager) {
+            super(authenticationManager);
+        }
+
+        @Override
+        protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws IOException, ServletException {
+            String header = request.getHeader(JwtProperties.HEADER_STRING);
+            if (header == null || !header.startsWith(JwtProperties.TOKEN_PREFIX)) {
+                chain.doFilter(request, response);
+                return;
+            }
+            Authentication authentication = getUsernamePasswordAuthentication(request);
+            SecurityContextHolder.getContext().setAuthentication(authentication);
+            chain.doFilter(request, response);
+        }
+
+        private Authentication getUsernamePasswordAuthentication(HttpServletRequest request) {
+            String token = request.getHeader(JwtProperties.HEADER_STRING)
+                                  .replace(JwtProperties.TOKEN_PREFIX,"");
+            String username = JWT.require(HMAC512(JwtProperties.SECRET.getBytes()))
+                                 .build()
+                                 .verify(token)
+                                 .getSubject();
+            if (username != null) {
+                String authoritiesJwt = JWT.require(HMAC512(JwtProperties.SECRET.getBytes()))
+                                           .build()
+                                           .verify(token)
+                                           .getClaim("authorities").toString();
+                List<GrantedAuthority> authorities = new ArrayList<>();
+                Arrays.asList(authoritiesJwt.split(",")).forEach(p -> authorities.add(new SimpleGrantedAuthority(p)));
+                return new UsernamePasswordAuthenticationToken(username, null, authorities);
+            }
+            return null;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JwtAuthorizationFilterBenchmark.class.getSimpleName()).build()).run();
+    }
+}
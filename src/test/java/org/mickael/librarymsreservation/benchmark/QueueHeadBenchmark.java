@@ -0,0 +1,88 @@
+package org.mickael.librarymsreservation.benchmark;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.mickael.librarymsreservation.repository.ReservationJdbcRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the allocation of queue positions, on one hot book and spread over many books,
+ * each allocation in its own transaction as in ReservationServiceImpl.save.
+ *
+ * Needs a PostgreSQL database, a scratch one is better: the table is created if missing and only
+ * the rows of negative book ids are used and deleted afterwards.
+ * -Dbenchmark.datasource.url, -Dbenchmark.datasource.username and -Dbenchmark.datasource.password
+ * default to the application database. The main method runs 1 to 16 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class QueueHeadBenchmark {
+
+    private static final int SPREAD_BOOKS = 10_000;
+
+    @Param({"hot", "spread"})
+    private String books;
+
+    private HikariDataSource dataSource;
+    private ReservationJdbcRepository reservationJdbcRepository;
+    private TransactionTemplate transactionTemplate;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        HikariConfig hikariConfig = new HikariConfig();
+        hikariConfig.setJdbcUrl(System.getProperty("benchmark.datasource.url", "jdbc:postgresql://localhost:5432/library-ms-reservation"));
+        hikariConfig.setUsername(System.getProperty("benchmark.datasource.username", "admin_library"));
+        hikariConfig.setPassword(System.getProperty("benchmark.datasource.password", "adminlibrary"));
+        hikariConfig.setMaximumPoolSize(32);
+        dataSource = new HikariDataSource(hikariConfig);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table if not exists reservation_queue_head "
+                                     + "(book_id integer not null primary key, last_position integer not null)");
+        jdbcTemplate.update("delete from reservation_queue_head where book_id < 0");
+        reservationJdbcRepository = new ReservationJdbcRepository(jdbcTemplate);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        new JdbcTemplate(dataSource).update("delete from reservation_queue_head where book_id < 0");
+        dataSource.close();
+    }
+
+    @Benchmark
+    public Integer allocatePosition() {
+        Integer bookId = "hot".equals(books) ? -1 : -1 - ThreadLocalRandom.current().nextInt(SPREAD_BOOKS);
+        return transactionTemplate.execute(status -> reservationJdbcRepository.allocatePosition(bookId));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{1, 2, 4, 8, 16}) {
+            new Runner(new OptionsBuilder().include(QueueHeadBenchmark.class.getSimpleName()).threads(threads).build()).run();
+        }
+    }
+}
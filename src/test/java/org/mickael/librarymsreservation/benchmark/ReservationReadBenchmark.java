@@ -0,0 +1,161 @@
+package org.mickael.librarymsreservation.benchmark;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.mickael.librarymsreservation.model.Reservation;
+import org.mickael.librarymsreservation.repository.ReservationRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the reads of the UI (by id, by book, by customer) with and without the second-level and query cache,
+ * each read in its own read-only transaction as a request.
+ *
+ * Needs a PostgreSQL database with the reservation table, a scratch one is better: only the rows of negative
+ * book ids are used and deleted afterwards.
+ * -Dbenchmark.datasource.url, -Dbenchmark.datasource.username and -Dbenchmark.datasource.password
+ * default to the application database. The region configuration comes from application.conf.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class ReservationReadBenchmark {
+
+    private static final int BOOKS = 100;
+    private static final int RESERVATIONS_BY_BOOK = 10;
+    private static final int CUSTOMERS = 200;
+
+    @Param({"true", "false"})
+    private String cache;
+
+    private AnnotationConfigApplicationContext context;
+    private ReservationRepository reservationRepository;
+    private TransactionTemplate transactionTemplate;
+    private List<Integer> reservationIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext();
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("benchmark.cache", cache);
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark", properties));
+        context.register(BenchmarkConfiguration.class);
+        context.refresh();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(context.getBean(DataSource.class));
+        jdbcTemplate.update("delete from reservation where book_id < 0");
+        for (int book = 0; book < BOOKS; book++) {
+            for (int i = 0; i < RESERVATIONS_BY_BOOK; i++) {
+                jdbcTemplate.update("insert into reservation (create_reservation_date, soon_disponibility_date, customer_id, customer_email, "
+                                            + "customer_firstname, customer_lastname, book_id, book_title, position) "
+                                            + "values (now(), current_date, ?, 'benchmark@mail.com', 'Bench', 'Mark', ?, 'Benchmark', ?)",
+                        -1 - (book * RESERVATIONS_BY_BOOK + i) % CUSTOMERS, -1 - book, i + 1);
+            }
+        }
+        reservationIds = jdbcTemplate.queryForList("select reservation_id from reservation where book_id < 0", Integer.class);
+        reservationRepository = context.getBean(ReservationRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(JpaTransactionManager.class));
+        transactionTemplate.setReadOnly(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        new JdbcTemplate(context.getBean(DataSource.class)).update("delete from reservation where book_id < 0");
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<Reservation> findById() {
+        Integer reservationId = reservationIds.get(ThreadLocalRandom.current().nextInt(reservationIds.size()));
+        return transactionTemplate.execute(status -> reservationRepository.findById(reservationId));
+    }
+
+    @Benchmark
+    public List<Reservation> findAllByBookId() {
+        Integer bookId = -1 - ThreadLocalRandom.current().nextInt(BOOKS);
+        return transactionTemplate.execute(status -> reservationRepository.findAllByBookId(bookId));
+    }
+
+    @Benchmark
+    public List<Reservation> findAllByCustomerId() {
+        Integer customerId = -1 - ThreadLocalRandom.current().nextInt(CUSTOMERS);
+        return transactionTemplate.execute(status -> reservationRepository.findAllByCustomerId(customerId));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ReservationReadBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    /**
+     * The JPA part of the application only, with the cache settings of application.properties.
+     * Not a @Configuration: the application scans the test classes too.
+     */
+    @EnableJpaRepositories(basePackageClasses = ReservationRepository.class)
+    static class BenchmarkConfiguration {
+
+        @Bean(destroyMethod = "close")
+        public HikariDataSource dataSource() {
+            HikariConfig hikariConfig = new HikariConfig();
+            hikariConfig.setJdbcUrl(System.getProperty("benchmark.datasource.url", "jdbc:postgresql://localhost:5432/library-ms-reservation"));
+            hikariConfig.setUsername(System.getProperty("benchmark.datasource.username", "admin_library"));
+            hikariConfig.setPassword(System.getProperty("benchmark.datasource.password", "adminlibrary"));
+            return new HikariDataSource(hikariConfig);
+        }
+
+        @Bean
+        public LocalContainerEntityManagerFactoryBean entityManagerFactory(DataSource dataSource, Environment environment) {
+            LocalContainerEntityManagerFactoryBean entityManagerFactory = new LocalContainerEntityManagerFactoryBean();
+            entityManagerFactory.setDataSource(dataSource);
+            entityManagerFactory.setPackagesToScan(Reservation.class.getPackage().getName());
+            entityManagerFactory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+            Map<String, Object> jpaProperties = new HashMap<>();
+            jpaProperties.put("hibernate.dialect", "org.hibernate.dialect.PostgreSQLDialect");
+            jpaProperties.put("hibernate.cache.use_second_level_cache", environment.getProperty("benchmark.cache"));
+            jpaProperties.put("hibernate.cache.use_query_cache", environment.getProperty("benchmark.cache"));
+            jpaProperties.put("hibernate.cache.region.factory_class", "jcache");
+            jpaProperties.put("hibernate.javax.cache.provider", "com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider");
+            entityManagerFactory.setJpaPropertyMap(jpaProperties);
+            return entityManagerFactory;
+        }
+
+        @Bean
+        public JpaTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+            return new JpaTransactionManager(entityManagerFactory);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package org.mickael.librarymsreservation.proxy;
+
+import com.netflix.client.DefaultLoadBalancerRetryHandler;
+import com.netflix.loadbalancer.BaseLoadBalancer;
+import com.netflix.loadbalancer.LoadBalancerStats;
+import com.netflix.loadbalancer.Server;
+import com.netflix.loadbalancer.ServerStats;
+import com.netflix.loadbalancer.reactive.LoadBalancerCommand;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import rx.Observable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LatencyAwareRuleTest {
+
+    private LatencyAwareRule latencyAwareRuleUnderTest;
+
+    private BaseLoadBalancer loadBalancer;
+    private final List<HttpServer> stubs = new ArrayList<>();
+
+    @BeforeEach
+    void setUp(){
+        latencyAwareRuleUnderTest = new LatencyAwareRule();
+        loadBalancer = new BaseLoadBalancer();
+        loadBalancer.setRule(latencyAwareRuleUnderTest);
+    }
+
+    @AfterEach
+    void tearDown(){
+        stubs.forEach(stub -> stub.stop(0));
+    }
+
+    @Test
+    void itShouldPreferTheFastestInstance() throws IOException {
+        //Given
+        Server fast = stub("fast", 0);
+        Server slow = stub("slow", 50);
+        //the first calls load the classes, their response time would make the fast instance look slow
+        BaseLoadBalancer warmUpLoadBalancer = new BaseLoadBalancer();
+        warmUpLoadBalancer.addServers(Arrays.asList(fast, slow));
+        for (int i = 0; i < 2; i++) {
+            call(warmUpLoadBalancer, 1);
+        }
+        loadBalancer.addServers(Arrays.asList(fast, slow));
+
+        //When
+        List<String> responses = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            responses.add(call(loadBalancer, 1));
+        }
+
+        //Then
+        assertThat(responses.stream().filter("fast"::equals).count()).isGreaterThanOrEqualTo(36);
+    }
+
+    @Test
+    void itShouldAvoidAnInstanceRefusingConnections() throws IOException {
+        //Given
+        Server stopped = stub("stopped", 0);
+        Server running = stub("running", 0);
+        loadBalancer.addServers(Arrays.asList(stopped, running));
+        stubs.get(0).stop(0);
+        //calls without retry on the other instance, until the refused connections trip the circuit of the stopped one
+        ServerStats stoppedStats = loadBalancer.getLoadBalancerStats().getSingleServerStat(stopped);
+        for (int i = 0; i < 100 && !stoppedStats.isCircuitBreakerTripped(); i++) {
+            try {
+                call(loadBalancer, 0);
+            } catch (RuntimeException e) {
+                //refused connection
+            }
+        }
+
+        //When
+        List<Server> chosen = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            chosen.add(latencyAwareRuleUnderTest.choose(null));
+        }
+
+        //Then
+        assertThat(stoppedStats.isCircuitBreakerTripped()).isTrue();
+        assertThat(chosen).containsOnly(running);
+    }
+
+    @Test
+    void itShouldEjectATrippedInstance(){
+        //Given
+        Server tripped = new Server("localhost", 8200);
+        Server other = new Server("localhost", 8201);
+        loadBalancer.addServers(Arrays.asList(tripped, other));
+        LoadBalancerStats loadBalancerStats = loadBalancer.getLoadBalancerStats();
+        respond(loadBalancerStats, tripped, 1);
+        respond(loadBalancerStats, other, 100);
+        for (int i = 0; i < 3; i++) {
+            loadBalancerStats.incrementSuccessiveConnectionFailureCount(tripped);
+        }
+
+        //When
+        List<Server> chosen = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            chosen.add(latencyAwareRuleUnderTest.choose(null));
+        }
+
+        //Then
+        assertThat(chosen).containsOnly(other);
+    }
+
+    @Test
+    void itShouldNotEjectMoreThanHalfOfTheInstances(){
+        //Given
+        Server first = new Server("localhost", 8200);
+        Server second = new Server("localhost", 8201);
+        loadBalancer.addServers(Arrays.asList(first, second));
+        LoadBalancerStats loadBalancerStats = loadBalancer.getLoadBalancerStats();
+        for (int i = 0; i < 4; i++) {
+            loadBalancerStats.incrementSuccessiveConnectionFailureCount(first);
+        }
+        for (int i = 0; i < 3; i++) {
+            loadBalancerStats.incrementSuccessiveConnectionFailureCount(second);
+        }
+
+        //When
+        Server chosen = latencyAwareRuleUnderTest.choose(null);
+
+        //Then
+        assertThat(chosen).isEqualTo(second);
+    }
+
+    private void respond(LoadBalancerStats loadBalancerStats, Server server, double responseTime) {
+        loadBalancerStats.noteResponseTime(server, responseTime);
+        loadBalancerStats.incrementNumRequests(server);
+    }
+
+    //local instance answering its name after a delay (ms)
+    private Server stub(String name, long delay) throws IOException {
+        HttpServer stub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        stub.createContext("/", exchange -> {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = name.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        stub.start();
+        stubs.add(stub);
+        return new Server("localhost", stub.getAddress().getPort());
+    }
+
+    //a call through Ribbon, retried on other instances like the Feign proxies (retriesNextServer=1)
+    private String call(BaseLoadBalancer loadBalancer, int retriesNextServer) {
+        return LoadBalancerCommand.<String>builder()
+                                  .withLoadBalancer(loadBalancer)
+                                  .withRetryHandler(new DefaultLoadBalancerRetryHandler(0, retriesNextServer, true))
+                                  .build()
+                                  .submit(server -> Observable.defer(() -> {
+                                      try {
+                                          return Observable.just(get(server));
+                                      } catch (IOException e) {
+                                          return Observable.error(e);
+                                      }
+                                  }))
+                                  .toBlocking()
+                                  .single();
+    }
+
+    private String get(Server server) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://" + server.getHostPort() + "/api/loans/book/1/soon-returned").openConnection();
+        connection.setConnectTimeout(500);
+        connection.setReadTimeout(2000);
+        try (InputStream inputStream = connection.getInputStream()) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[256];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+            return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.mickael.librarymsreservation.scheduler;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NotificationQueueTest {
+
+    private NotificationQueue notificationQueueUnderTest;
+
+    private final LocalDate today = LocalDate.of(2020, 10, 1);
+
+    @BeforeEach
+    void setUp(){
+        notificationQueueUnderTest = new NotificationQueue();
+    }
+
+    @Test
+    void itShouldReturnOnlyTheDueNotifications(){
+        //Given
+        notificationQueueUnderTest.schedule(1, today.minusDays(1));
+        notificationQueueUnderTest.schedule(2, today);
+        notificationQueueUnderTest.schedule(3, today.plusDays(1));
+
+        //When
+        //Then
+        assertThat(notificationQueueUnderTest.hasDue(today)).isTrue();
+        assertThat(notificationQueueUnderTest.pollDue(today)).containsExactlyInAnyOrder(1, 2);
+        assertThat(notificationQueueUnderTest.hasDue(today)).isFalse();
+        assertThat(notificationQueueUnderTest.size()).isEqualTo(1);
+    }
+
+    @Test
+    void itShouldMoveAndCancelANotification(){
+        //Given
+        notificationQueueUnderTest.schedule(1, today);
+        notificationQueueUnderTest.schedule(2, today);
+
+        //When
+        notificationQueueUnderTest.schedule(1, today.plusDays(2));
+        notificationQueueUnderTest.cancel(2);
+
+        //Then
+        assertThat(notificationQueueUnderTest.pollDue(today)).isEmpty();
+        assertThat(notificationQueueUnderTest.pollDue(today.plusDays(2))).containsExactly(1);
+    }
+
+    @Test
+    void itShouldKeepTheChangesMadeDuringARebuild(){
+        //Given
+        notificationQueueUnderTest.schedule(1, today);
+        notificationQueueUnderTest.beginRebuild();
+        Map<Integer, LocalDate> schedules = new HashMap<>();
+        schedules.put(1, today);
+        schedules.put(2, today);
+        schedules.put(3, today);
+
+        //When
+        notificationQueueUnderTest.schedule(2, today.plusDays(5));
+        notificationQueueUnderTest.pollDue(today);
+        notificationQueueUnderTest.completeRebuild(schedules);
+
+        //Then
+        //1 already notified, 2 moved after the database was read
+        assertThat(notificationQueueUnderTest.pollDue(today)).containsExactly(3);
+        assertThat(notificationQueueUnderTest.pollDue(today.plusDays(5))).containsExactly(2);
+    }
+}
@@ -0,0 +1,94 @@
+package org.mickael.librarymsreservation.service.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mickael.librarymsreservation.proxy.FeignBookProxy;
+import org.mickael.librarymsreservation.proxy.FeignLoanProxy;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.times;
+
+class CoalescingLookupServiceImplTest {
+
+    @Mock
+    private FeignLoanProxy feignLoanProxy;
+
+    @Mock
+    private FeignBookProxy feignBookProxy;
+
+    private MeterRegistry meterRegistry;
+
+    private CoalescingLookupServiceImpl coalescingLookupServiceUnderTest;
+
+    private static final String TOKEN = "Bearer token";
+
+    @BeforeEach
+    void setUp(){
+        MockitoAnnotations.initMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        coalescingLookupServiceUnderTest = new CoalescingLookupServiceImpl(feignLoanProxy, feignBookProxy, meterRegistry);
+    }
+
+    @Test
+    void itShouldShareOneCallBetweenConcurrentCallers() throws Exception {
+        //Given
+        Integer bookId = 18;
+        int callers = 8;
+        CountDownLatch release = new CountDownLatch(1);
+        given(feignBookProxy.numberOfCopyAvailableForBook(bookId, TOKEN)).willAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return 3;
+        });
+        ExecutorService executorService = Executors.newFixedThreadPool(callers);
+
+        //When
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            results.add(executorService.submit(() -> coalescingLookupServiceUnderTest.numberOfCopyAvailableForBook(bookId, TOKEN)));
+        }
+        while (coalescedCalls() < callers - 1){
+            Thread.sleep(5);
+        }
+        release.countDown();
+
+        //Then
+        for (Future<Integer> result : results){
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo(3);
+        }
+        executorService.shutdownNow();
+        then(feignBookProxy).should(times(1)).numberOfCopyAvailableForBook(bookId, TOKEN);
+    }
+
+    @Test
+    void itShouldCallAgainOnceTheCallIsDone(){
+        //Given
+        Integer bookId = 18;
+        given(feignBookProxy.numberOfCopyAvailableForBook(bookId, TOKEN)).willReturn(3);
+
+        //When
+        coalescingLookupServiceUnderTest.numberOfCopyAvailableForBook(bookId, TOKEN);
+        coalescingLookupServiceUnderTest.numberOfCopyAvailableForBook(bookId, "token");
+
+        //Then
+        then(feignBookProxy).should(times(2)).numberOfCopyAvailableForBook(bookId, TOKEN);
+        assertThat(coalescedCalls()).isZero();
+    }
+
+    private double coalescedCalls(){
+        return meterRegistry.get("feign.lookup.coalesced").tag("method", "numberOfCopyAvailableForBook").functionCounter().count();
+    }
+}
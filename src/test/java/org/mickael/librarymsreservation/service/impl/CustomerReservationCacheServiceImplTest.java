@@ -0,0 +1,90 @@
+package org.mickael.librarymsreservation.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mickael.librarymsreservation.model.Reservation;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerReservationCacheServiceImplTest {
+
+    private CustomerReservationCacheServiceImpl customerReservationCacheServiceUnderTest;
+
+    private AtomicInteger databaseReads;
+
+    @BeforeEach
+    void setUp(){
+        customerReservationCacheServiceUnderTest = new CustomerReservationCacheServiceImpl(new SimpleMeterRegistry(), 100, Duration.ofMinutes(1));
+        databaseReads = new AtomicInteger();
+    }
+
+    @Test
+    void itShouldReadTheReservationsOfACustomerOnlyOnce(){
+        //Given
+        Integer customerId = 2;
+
+        //When
+        customerReservationCacheServiceUnderTest.get(customerId, loader(18));
+        List<Reservation> cachedReservations = customerReservationCacheServiceUnderTest.get(customerId, loader(18));
+
+        //Then
+        assertThat(cachedReservations).extracting(Reservation::getBookId).containsExactly(18);
+        assertThat(databaseReads.get()).isEqualTo(1);
+        assertThat(customerReservationCacheServiceUnderTest.getStatistics().get("hitCount")).isEqualTo(1L);
+        assertThat(customerReservationCacheServiceUnderTest.memoryBytes()).isPositive();
+    }
+
+    @Test
+    void itShouldOnlyEvictTheCustomersOfTheChangedBook(){
+        //Given
+        customerReservationCacheServiceUnderTest.get(2, loader(18, 21));
+        customerReservationCacheServiceUnderTest.get(3, loader(18));
+        customerReservationCacheServiceUnderTest.get(4, loader(30));
+
+        //When
+        customerReservationCacheServiceUnderTest.evictBookAfterCommit(18);
+        customerReservationCacheServiceUnderTest.get(2, loader(18, 21));
+        customerReservationCacheServiceUnderTest.get(3, loader(18));
+        customerReservationCacheServiceUnderTest.get(4, loader(30));
+
+        //Then
+        assertThat(databaseReads.get()).isEqualTo(5);
+    }
+
+    @Test
+    void itShouldEvictTheCustomerOfACreatedReservation(){
+        //Given
+        customerReservationCacheServiceUnderTest.get(2, loader(18));
+        customerReservationCacheServiceUnderTest.get(3, loader(18));
+
+        //When
+        customerReservationCacheServiceUnderTest.evictCustomersAfterCommit(Collections.singletonList(2));
+        List<Reservation> reservations = customerReservationCacheServiceUnderTest.get(2, loader(18, 21));
+        customerReservationCacheServiceUnderTest.get(3, loader(18));
+
+        //Then
+        assertThat(reservations).extracting(Reservation::getBookId).containsExactly(18, 21);
+        assertThat(databaseReads.get()).isEqualTo(3);
+    }
+
+    private Function<Integer, List<Reservation>> loader(Integer... bookIds){
+        return customerId -> {
+            databaseReads.incrementAndGet();
+            Reservation[] reservations = new Reservation[bookIds.length];
+            for (int i = 0; i < bookIds.length; i++) {
+                reservations[i] = new Reservation();
+                reservations[i].setCustomerId(customerId);
+                reservations[i].setBookId(bookIds[i]);
+            }
+            return Arrays.asList(reservations);
+        };
+    }
+}
@@ -0,0 +1,158 @@
+package org.mickael.librarymsreservation.service.impl;
+
+import feign.Client;
+import feign.Feign;
+import feign.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mickael.librarymsreservation.proxy.FeignLoanProxy;
+import org.mickael.librarymsreservation.proxy.HedgingClient;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.cloud.openfeign.support.ResponseEntityDecoder;
+import org.springframework.cloud.openfeign.support.SpringDecoder;
+import org.springframework.cloud.openfeign.support.SpringMvcContract;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HedgingServiceImplTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private HedgingServiceImpl hedgingServiceUnderTest;
+
+    private ExecutorService hedgingTaskExecutor;
+
+    //invocations of the loan service, the slow ones answer after 500ms with the first date
+    private final AtomicInteger invocations = new AtomicInteger();
+    private final Set<Integer> slowInvocations = new HashSet<>();
+    private final CountDownLatch interruptedInvocations = new CountDownLatch(1);
+
+    private static final String TOKEN = "Bearer token";
+    private static final String METHOD = "FeignLoanProxy#getSoonReturned(Integer,String)";
+
+    @BeforeEach
+    void setUp(){
+        meterRegistry = new SimpleMeterRegistry();
+        hedgingTaskExecutor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown(){
+        hedgingTaskExecutor.shutdownNow();
+    }
+
+    @Test
+    void itShouldHedgeAfterThePercentileOfTheResponseTimes(){
+        //Given
+        hedgingServiceUnderTest = new HedgingServiceImpl(meterRegistry, new String[]{"library-ms-loan"}, 0.95, Duration.ofMillis(20), 100, 5, 10);
+        for (int i = 1; i <= 100; i++) {
+            hedgingServiceUnderTest.recordLatency(METHOD, TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        //When
+        long delay = hedgingServiceUnderTest.onRequest("library-ms-loan", METHOD);
+
+        //Then
+        assertThat(delay).isEqualTo(TimeUnit.MILLISECONDS.toNanos(95));
+        assertThat(hedgingServiceUnderTest.isHedged("library-ms-loan")).isTrue();
+        assertThat(hedgingServiceUnderTest.isHedged("library-ms-book")).isFalse();
+    }
+
+    @Test
+    void itShouldServeTheFirstAnswerOfAHedgedRequest(){
+        //Given
+        hedgingServiceUnderTest = new HedgingServiceImpl(meterRegistry, new String[]{"library-ms-loan"}, 0.95, Duration.ofMillis(1), 5, 5, 10);
+        FeignLoanProxy feignLoanProxy = feignLoanProxy();
+        for (int i = 0; i < 5; i++) {
+            feignLoanProxy.getSoonReturned(18, TOKEN);
+        }
+        slowInvocations.add(6);
+
+        //When
+        List<LocalDate> listReturnLoanDate = feignLoanProxy.getSoonReturned(18, TOKEN);
+
+        //Then
+        assertThat(listReturnLoanDate).containsExactly(LocalDate.of(2020, 6, 8));
+        assertThat(meterRegistry.get("feign.hedge.sent").tag("method", METHOD).counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("feign.hedge.won").tag("method", METHOD).counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void itShouldInterruptTheLosingCall() throws InterruptedException {
+        //Given
+        hedgingServiceUnderTest = new HedgingServiceImpl(meterRegistry, new String[]{"library-ms-loan"}, 0.95, Duration.ofMillis(1), 5, 5, 10);
+        FeignLoanProxy feignLoanProxy = feignLoanProxy();
+        for (int i = 0; i < 5; i++) {
+            feignLoanProxy.getSoonReturned(18, TOKEN);
+        }
+        slowInvocations.add(6);
+
+        //When
+        feignLoanProxy.getSoonReturned(18, TOKEN);
+
+        //Then
+        assertThat(interruptedInvocations.await(200, TimeUnit.MILLISECONDS)).isTrue();
+    }
+
+    @Test
+    void itShouldNotHedgeBeyondTheBudget(){
+        //Given
+        hedgingServiceUnderTest = new HedgingServiceImpl(meterRegistry, new String[]{"library-ms-loan"}, 0.95, Duration.ofMillis(1), 5, 0, 1);
+        FeignLoanProxy feignLoanProxy = feignLoanProxy();
+        for (int i = 0; i < 5; i++) {
+            feignLoanProxy.getSoonReturned(18, TOKEN);
+        }
+        slowInvocations.add(6);
+        slowInvocations.add(8);
+
+        //When
+        List<LocalDate> hedged = feignLoanProxy.getSoonReturned(18, TOKEN);
+        List<LocalDate> notHedged = feignLoanProxy.getSoonReturned(18, TOKEN);
+
+        //Then
+        assertThat(hedged).containsExactly(LocalDate.of(2020, 6, 8));
+        assertThat(notHedged).containsExactly(LocalDate.of(2020, 6, 1));
+        assertThat(meterRegistry.get("feign.hedge.sent").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("feign.hedge.skipped").tag("reason", "budget").counter().count()).isEqualTo(1);
+    }
+
+    private FeignLoanProxy feignLoanProxy(){
+        Client client = (request, options) -> {
+            String body = "[\"2020-06-08\"]";
+            if (slowInvocations.contains(invocations.incrementAndGet())){
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    interruptedInvocations.countDown();
+                    Thread.currentThread().interrupt();
+                }
+                body = "[\"2020-06-01\"]";
+            }
+            return Response.builder().status(200).request(request).headers(Collections.singletonMap("Content-Type", Collections.singletonList("application/json")))
+                           .body(body, StandardCharsets.UTF_8).build();
+        };
+        return Feign.builder()
+                    .contract(new SpringMvcContract())
+                    .client(new HedgingClient(client, hedgingServiceUnderTest, hedgingTaskExecutor))
+                    .decoder(new ResponseEntityDecoder(new SpringDecoder(
+                            () -> new HttpMessageConverters(new MappingJackson2HttpMessageConverter(Jackson2ObjectMapperBuilder.json().build())))))
+                    .target(FeignLoanProxy.class, "http://library-ms-loan");
+    }
+}
@@ -0,0 +1,147 @@
+package org.mickael.librarymsreservation.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import feign.hystrix.HystrixFeign;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mickael.librarymsreservation.configuration.FeignFallbackConfig;
+import org.mickael.librarymsreservation.exception.CustomErrorDecoder;
+import org.mickael.librarymsreservation.exception.NotFoundException;
+import org.mickael.librarymsreservation.exception.ServiceUnavailableException;
+import org.mickael.librarymsreservation.proxy.FeignLoanProxy;
+import org.mickael.librarymsreservation.proxy.FeignLoanProxyFallbackFactory;
+import org.mickael.librarymsreservation.utils.HandlerHystrix;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.cloud.openfeign.support.SpringMvcContract;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LastKnownGoodServiceImplTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private LastKnownGoodServiceImpl lastKnownGoodServiceUnderTest;
+
+    //status and body of the next response of the loan service, a status of 0 fails the connection
+    private int status;
+    private String body;
+    private boolean gzip;
+
+    private FeignLoanProxy feignLoanProxy;
+
+    private static final String TOKEN = "Bearer token";
+
+    @BeforeEach
+    void setUp(){
+        meterRegistry = new SimpleMeterRegistry();
+        lastKnownGoodServiceUnderTest = new LastKnownGoodServiceImpl(meterRegistry, 100, Duration.ofMinutes(1));
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        Client client = (request, options) -> {
+            if (status == 0){
+                throw new ConnectException("Connection refused");
+            }
+            Map<String, Collection<String>> headers = new HashMap<>();
+            headers.put("Content-Type", Collections.singletonList("application/json"));
+            byte[] content = body.getBytes(StandardCharsets.UTF_8);
+            if (gzip){
+                headers.put("Content-Encoding", Collections.singletonList("gzip"));
+                content = gzip(content);
+            }
+            return Response.builder().status(status).request(request).headers(headers).body(content).build();
+        };
+        feignLoanProxy = HystrixFeign.builder()
+                                     .contract(new SpringMvcContract())
+                                     .client(client)
+                                     .decoder(new FeignFallbackConfig().feignDecoder(
+                                             () -> new HttpMessageConverters(new MappingJackson2HttpMessageConverter(objectMapper)), lastKnownGoodServiceUnderTest))
+                                     .errorDecoder(new CustomErrorDecoder(meterRegistry))
+                                     .target(FeignLoanProxy.class, "http://localhost:8200", new FeignLoanProxyFallbackFactory(lastKnownGoodServiceUnderTest));
+    }
+
+    @Test
+    void itShouldServeTheLastKnownGoodResponseWhenTheServiceFails(){
+        //Given
+        status = 200;
+        body = "[\"2020-06-01\",\"2020-06-08\"]";
+        feignLoanProxy.getSoonReturned(18, TOKEN);
+        status = 0;
+
+        //When
+        List<LocalDate> listReturnLoanDate = HandlerHystrix.call(() -> feignLoanProxy.getSoonReturned(18, TOKEN));
+
+        //Then
+        assertThat(listReturnLoanDate).containsExactly(LocalDate.of(2020, 6, 1), LocalDate.of(2020, 6, 8));
+        assertThat(meterRegistry.get("feign.fallback").tag("result", "stale").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void itShouldInflateAGzippedResponse(){
+        //Given
+        status = 200;
+        body = "[\"2020-06-01\",\"2020-06-08\"]";
+        gzip = true;
+
+        //When
+        List<LocalDate> listReturnLoanDate = feignLoanProxy.getSoonReturned(18, TOKEN);
+
+        //Then
+        assertThat(listReturnLoanDate).containsExactly(LocalDate.of(2020, 6, 1), LocalDate.of(2020, 6, 8));
+    }
+
+    @Test
+    void itShouldBeUnavailableWithoutLastKnownGoodResponse(){
+        //Given
+        status = 503;
+        body = "";
+
+        //When
+        //Then
+        assertThatThrownBy(() -> HandlerHystrix.call(() -> feignLoanProxy.getSoonReturned(18, TOKEN)))
+                .isInstanceOf(ServiceUnavailableException.class);
+        assertThatThrownBy(() -> HandlerHystrix.call(() -> feignLoanProxy.checkIfLoanExistForCustomerIdAndBookId(2, 18, TOKEN)))
+                .isInstanceOf(ServiceUnavailableException.class);
+        assertThat(meterRegistry.get("feign.errors").tag("outcome", "SERVER_ERROR").counters()).isNotEmpty();
+    }
+
+    @Test
+    void itShouldNotUseTheFallbackForANotFoundBook(){
+        //Given
+        status = 200;
+        body = "[\"2020-06-01\"]";
+        feignLoanProxy.getSoonReturned(18, TOKEN);
+        status = 404;
+
+        //When
+        //Then
+        assertThatThrownBy(() -> HandlerHystrix.call(() -> feignLoanProxy.getSoonReturned(18, TOKEN)))
+                .isInstanceOf(NotFoundException.class);
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream)) {
+            gzipOutputStream.write(content);
+        }
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,67 @@
+package org.mickael.librarymsreservation.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mickael.librarymsreservation.service.contract.CoalescingLookupServiceContract;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.times;
+
+class LoanCacheServiceImplTest {
+
+    @Mock
+    private CoalescingLookupServiceContract coalescingLookupServiceContract;
+
+    private LoanCacheServiceImpl loanCacheServiceUnderTest;
+
+    private static final String TOKEN = "Bearer token";
+
+    @BeforeEach
+    void setUp(){
+        MockitoAnnotations.initMocks(this);
+        loanCacheServiceUnderTest = new LoanCacheServiceImpl(coalescingLookupServiceContract, new SimpleMeterRegistry(), 100, Duration.ofMinutes(1));
+    }
+
+    @Test
+    void itShouldCallTheLoanServiceOnlyOncePerBook(){
+        //Given
+        Integer bookId = 18;
+        List<LocalDate> listReturnLoanDate = Collections.singletonList(LocalDate.now());
+        given(coalescingLookupServiceContract.getSoonReturned(bookId, TOKEN)).willReturn(listReturnLoanDate);
+
+        //When
+        loanCacheServiceUnderTest.getSoonReturned(bookId, TOKEN);
+        List<LocalDate> cachedList = loanCacheServiceUnderTest.getSoonReturned(bookId, "token");
+
+        //Then
+        assertThat(cachedList).isEqualTo(listReturnLoanDate);
+        then(coalescingLookupServiceContract).should(times(1)).getSoonReturned(bookId, TOKEN);
+        assertThat(loanCacheServiceUnderTest.getStatistics().get("hitCount")).isEqualTo(1L);
+        assertThat(loanCacheServiceUnderTest.getStatistics().get("missCount")).isEqualTo(1L);
+    }
+
+    @Test
+    void itShouldCallTheLoanServiceAgainAfterEviction(){
+        //Given
+        Integer bookId = 18;
+        given(coalescingLookupServiceContract.getSoonReturned(bookId, TOKEN)).willReturn(Collections.emptyList());
+
+        //When
+        loanCacheServiceUnderTest.getSoonReturned(bookId, TOKEN);
+        loanCacheServiceUnderTest.evict(bookId);
+        loanCacheServiceUnderTest.getSoonReturned(bookId, TOKEN);
+
+        //Then
+        then(coalescingLookupServiceContract).should(times(2)).getSoonReturned(bookId, TOKEN);
+    }
+}
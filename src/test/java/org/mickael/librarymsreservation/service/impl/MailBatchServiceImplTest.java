@@ -0,0 +1,86 @@
+package org.mickael.librarymsreservation.service.impl;
+
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MailBatchServiceImplTest {
+
+    private GreenMail smtpServer;
+
+    private MeterRegistry meterRegistry;
+
+    private MailBatchServiceImpl mailBatchServiceUnderTest;
+
+    @BeforeEach
+    void setUp(){
+        smtpServer = new GreenMail(ServerSetupTest.SMTP);
+        smtpServer.start();
+        JavaMailSenderImpl javaMailSender = new JavaMailSenderImpl();
+        javaMailSender.setHost(ServerSetupTest.SMTP.getBindAddress());
+        javaMailSender.setPort(ServerSetupTest.SMTP.getPort());
+        meterRegistry = new SimpleMeterRegistry();
+        mailBatchServiceUnderTest = new MailBatchServiceImpl(javaMailSender, meterRegistry, 3);
+    }
+
+    @AfterEach
+    void tearDown(){
+        smtpServer.stop();
+    }
+
+    @Test
+    void itShouldSendAllTheMessages(){
+        //Given
+        List<SimpleMailMessage> mailMessages = mailMessages(7);
+
+        //When
+        Map<SimpleMailMessage, Exception> failedMessages = mailBatchServiceUnderTest.sendAll(mailMessages);
+
+        //Then
+        assertThat(failedMessages).isEmpty();
+        assertThat(smtpServer.getReceivedMessages()).hasSize(7);
+        //7 messages, 3 per connection
+        assertThat(meterRegistry.get("mail.batch.connection").timer().count()).isEqualTo(3);
+        assertThat(meterRegistry.get("mail.batch.messages").tag("result", "sent").counter().count()).isEqualTo(7);
+        assertThat(meterRegistry.get("mail.batch.throughput").gauge().value()).isPositive();
+    }
+
+    @Test
+    void itShouldReturnTheMessagesNotSent(){
+        //Given
+        List<SimpleMailMessage> mailMessages = mailMessages(4);
+        smtpServer.stop();
+
+        //When
+        Map<SimpleMailMessage, Exception> failedMessages = mailBatchServiceUnderTest.sendAll(mailMessages);
+
+        //Then
+        assertThat(failedMessages).hasSize(4);
+        assertThat(meterRegistry.get("mail.batch.messages").tag("result", "failed").counter().count()).isEqualTo(4);
+    }
+
+    private List<SimpleMailMessage> mailMessages(int count){
+        List<SimpleMailMessage> mailMessages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            SimpleMailMessage mailMessage = new SimpleMailMessage();
+            mailMessage.setFrom("mc.ocform@gmail.com");
+            mailMessage.setTo("customer" + i + "@gmail.com");
+            mailMessage.setSubject("Réservation - Bibliothèque d'OCland");
+            mailMessage.setText("message " + i);
+            mailMessages.add(mailMessage);
+        }
+        return mailMessages;
+    }
+}
@@ -0,0 +1,137 @@
+package org.mickael.librarymsreservation.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mickael.librarymsreservation.model.MailOutbox;
+import org.mickael.librarymsreservation.model.MailStatus;
+import org.mickael.librarymsreservation.repository.MailOutboxRepository;
+import org.mickael.librarymsreservation.service.contract.MailBatchServiceContract;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+
+class MailOutboxServiceImplTest {
+
+    @Mock
+    private MailOutboxRepository mailOutboxRepository;
+
+    @Mock
+    private MailBatchServiceContract mailBatchServiceContract;
+
+    @Captor
+    private ArgumentCaptor<MailOutbox> mailOutboxArgumentCaptor;
+
+    private MailOutboxServiceImpl mailOutboxServiceUnderTest;
+
+    @BeforeEach
+    void setUp(){
+        MockitoAnnotations.initMocks(this);
+        mailOutboxServiceUnderTest = new MailOutboxServiceImpl(mailOutboxRepository, mailBatchServiceContract, 50, 3,
+                Duration.ofSeconds(30), Duration.ofMinutes(5));
+    }
+
+    @Test
+    void itShouldStoreThePendingMail(){
+        //Given
+        SimpleMailMessage mailMessage = new SimpleMailMessage();
+        mailMessage.setFrom("mc.ocform@gmail.com");
+        mailMessage.setTo("coz.mickael@gmail.com");
+        mailMessage.setSubject("subject");
+        mailMessage.setText("text");
+
+        //When
+        mailOutboxServiceUnderTest.enqueue(mailMessage);
+
+        //Then
+        then(mailOutboxRepository).should().save(mailOutboxArgumentCaptor.capture());
+        MailOutbox mailOutbox = mailOutboxArgumentCaptor.getValue();
+        assertThat(mailOutbox.getStatus()).isEqualTo(MailStatus.PENDING);
+        assertThat(mailOutbox.getMailTo()).isEqualTo("coz.mickael@gmail.com");
+        assertThat(mailOutbox.getAttempts()).isZero();
+        then(mailBatchServiceContract).shouldHaveNoInteractions();
+    }
+
+    @Test
+    void itShouldSetTheMailSent(){
+        //Given
+        MailOutbox mailOutbox = pendingMail(0);
+        given(mailOutboxRepository.findMailsToSend(eq(MailStatus.PENDING), any(), any())).willReturn(Collections.singletonList(mailOutbox));
+        given(mailBatchServiceContract.sendAll(any())).willReturn(Collections.emptyMap());
+
+        //When
+        int processed = mailOutboxServiceUnderTest.dispatchPendingMails();
+
+        //Then
+        assertThat(processed).isEqualTo(1);
+        assertThat(mailOutbox.getStatus()).isEqualTo(MailStatus.SENT);
+        assertThat(mailOutbox.getSentDate()).isNotNull();
+    }
+
+    @Test
+    void itShouldRetryLaterWhenTheMailFailed(){
+        //Given
+        MailOutbox mailOutbox = pendingMail(1);
+        given(mailOutboxRepository.findMailsToSend(eq(MailStatus.PENDING), any(), any())).willReturn(Collections.singletonList(mailOutbox));
+        given(mailBatchServiceContract.sendAll(any())).willAnswer(invocation -> allFailed(invocation.getArgument(0)));
+
+        //When
+        mailOutboxServiceUnderTest.dispatchPendingMails();
+
+        //Then
+        assertThat(mailOutbox.getStatus()).isEqualTo(MailStatus.PENDING);
+        assertThat(mailOutbox.getAttempts()).isEqualTo(2);
+        assertThat(mailOutbox.getLastError()).contains("smtp timeout");
+        assertThat(mailOutbox.getNextAttemptDate()).isAfter(LocalDateTime.now().plusSeconds(50));
+    }
+
+    @Test
+    void itShouldSetTheMailDeadAfterMaxAttempts(){
+        //Given
+        MailOutbox mailOutbox = pendingMail(2);
+        given(mailOutboxRepository.findMailsToSend(eq(MailStatus.PENDING), any(), any())).willReturn(Collections.singletonList(mailOutbox));
+        given(mailBatchServiceContract.sendAll(any())).willAnswer(invocation -> allFailed(invocation.getArgument(0)));
+
+        //When
+        mailOutboxServiceUnderTest.dispatchPendingMails();
+
+        //Then
+        assertThat(mailOutbox.getStatus()).isEqualTo(MailStatus.DEAD);
+        assertThat(mailOutbox.getAttempts()).isEqualTo(3);
+    }
+
+    private Map<SimpleMailMessage, Exception> allFailed(List<SimpleMailMessage> mailMessages){
+        Map<SimpleMailMessage, Exception> failedMessages = new IdentityHashMap<>();
+        mailMessages.forEach(mailMessage -> failedMessages.put(mailMessage, new MailSendException("smtp timeout")));
+        return failedMessages;
+    }
+
+    private MailOutbox pendingMail(int attempts){
+        MailOutbox mailOutbox = new MailOutbox();
+        mailOutbox.setId(1);
+        mailOutbox.setMailFrom("mc.ocform@gmail.com");
+        mailOutbox.setMailTo("coz.mickael@gmail.com");
+        mailOutbox.setSubject("subject");
+        mailOutbox.setBody("text");
+        mailOutbox.setStatus(MailStatus.PENDING);
+        mailOutbox.setAttempts(attempts);
+        mailOutbox.setCreationDate(LocalDateTime.now());
+        mailOutbox.setNextAttemptDate(LocalDateTime.now());
+        return mailOutbox;
+    }
+}
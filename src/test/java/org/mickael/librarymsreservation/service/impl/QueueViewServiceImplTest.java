@@ -0,0 +1,158 @@
+package org.mickael.librarymsreservation.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mickael.librarymsreservation.model.QueueMode;
+import org.mickael.librarymsreservation.model.Reservation;
+import org.mickael.librarymsreservation.repository.ReservationRepository;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+
+class QueueViewServiceImplTest {
+
+    @Mock
+    private ReservationRepository reservationRepository;
+
+    @Mock
+    private EntityManager entityManager;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private QueueViewServiceImpl queueViewServiceUnderTest;
+
+    @BeforeEach
+    void setUp(){
+        MockitoAnnotations.initMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        queueViewServiceUnderTest = new QueueViewServiceImpl(reservationRepository, entityManager, meterRegistry, QueueMode.POSITION);
+    }
+
+    @Test
+    void itShouldNotServeTheQueuesUntilTheViewIsBuilt(){
+        //Given
+
+        //When
+        List<Reservation> queue = queueViewServiceUnderTest.findQueue(18);
+
+        //Then
+        assertThat(queue).isNull();
+    }
+
+    @Test
+    void itShouldServeTheQueueOfABookFromTheView(){
+        //Given
+        given(reservationRepository.streamAllOrderByBookIdAndPosition()).willReturn(Stream.of(
+                buildReservation(1, 2, 18, 1), buildReservation(2, 3, 18, 2), buildReservation(3, 2, 21, 1)));
+        queueViewServiceUnderTest.rebuild();
+
+        //When
+        List<Reservation> queue = queueViewServiceUnderTest.findQueue(18);
+
+        //Then
+        assertThat(queue).extracting(Reservation::getId).containsExactly(1, 2);
+        assertThat(queue).extracting(Reservation::getPosition).containsExactly(1, 2);
+        assertThat(queue.get(1).getCustomerEmail()).isEqualTo("customer3@mail.com");
+        assertThat(queue.get(1).getCreationReservationDate()).isEqualTo(LocalDateTime.of(2020, 6, 2, 10, 0, 0, 123_456_000));
+        assertThat(queue.get(1).getSoonDisponibilityDate()).isEqualTo(LocalDate.of(2020, 6, 4));
+        assertThat(queue.get(1).getEndOfPriority()).isNull();
+        assertThat(queueViewServiceUnderTest.findQueue(30)).isEmpty();
+        assertThat(meterRegistry.get("reservation.queue.view.reservations").gauge().value()).isEqualTo(3);
+    }
+
+    @Test
+    void itShouldFollowTheSavedMovedAndDeletedReservations(){
+        //Given
+        given(reservationRepository.streamAllOrderByBookIdAndPosition()).willReturn(Stream.of(
+                buildReservation(1, 2, 18, 1), buildReservation(2, 3, 18, 2)));
+        queueViewServiceUnderTest.rebuild();
+
+        //When
+        queueViewServiceUnderTest.insertAfterCommit(buildReservation(4, 5, 18, 3));
+        queueViewServiceUnderTest.removeAfterCommit(18, 1);
+        queueViewServiceUnderTest.updateDatesAfterCommit(18, Arrays.asList(2, 4),
+                Arrays.asList(LocalDate.of(2020, 7, 1), LocalDate.of(2020, 7, 3)), null);
+
+        //Then
+        List<Reservation> queue = queueViewServiceUnderTest.findQueue(18);
+        assertThat(queue).extracting(Reservation::getId).containsExactly(2, 4);
+        assertThat(queue).extracting(Reservation::getPosition).containsExactly(1, 2);
+        assertThat(queue).extracting(Reservation::getSoonDisponibilityDate).containsExactly(LocalDate.of(2020, 7, 1), LocalDate.of(2020, 7, 3));
+    }
+
+    @Test
+    void itShouldInsertAtTheirPositionTheReservationsCommittedInAnotherOrder(){
+        //Given
+        given(reservationRepository.streamAllOrderByBookIdAndPosition()).willReturn(Stream.of(
+                buildReservation(1, 2, 18, 1), buildReservation(2, 3, 18, 2)));
+        queueViewServiceUnderTest.rebuild();
+
+        //When
+        queueViewServiceUnderTest.insertAfterCommit(buildReservation(5, 6, 18, 4));
+        queueViewServiceUnderTest.insertAfterCommit(buildReservation(4, 5, 18, 3));
+
+        //Then
+        List<Reservation> queue = queueViewServiceUnderTest.findQueue(18);
+        assertThat(queue).extracting(Reservation::getId).containsExactly(1, 2, 4, 5);
+        assertThat(queue).extracting(Reservation::getPosition).containsExactly(1, 2, 3, 4);
+    }
+
+    @Test
+    void itShouldInsertByCreationDateWhenQueueOrderedByTimestamp(){
+        //Given
+        queueViewServiceUnderTest = new QueueViewServiceImpl(reservationRepository, entityManager, meterRegistry, QueueMode.TIMESTAMP);
+        given(reservationRepository.streamAllOrderByBookIdAndCreation()).willReturn(Stream.of(
+                buildReservation(1, 2, 18, null), buildReservation(2, 3, 18, null)));
+        queueViewServiceUnderTest.rebuild();
+
+        //When
+        queueViewServiceUnderTest.insertAfterCommit(buildReservation(5, 6, 18, null));
+        queueViewServiceUnderTest.insertAfterCommit(buildReservation(4, 5, 18, null));
+
+        //Then
+        assertThat(queueViewServiceUnderTest.findQueue(18)).extracting(Reservation::getId).containsExactly(1, 2, 4, 5);
+    }
+
+    @Test
+    void itShouldCountTheBooksDifferentFromTheDatabase(){
+        //Given
+        given(reservationRepository.streamAllOrderByBookIdAndPosition()).willReturn(
+                Stream.of(buildReservation(1, 2, 18, 1), buildReservation(3, 2, 21, 1)),
+                Stream.of(buildReservation(1, 2, 18, 1), buildReservation(5, 6, 30, 1)));
+        queueViewServiceUnderTest.rebuild();
+
+        //When
+        int inconsistencies = queueViewServiceUnderTest.rebuild();
+
+        //Then
+        assertThat(inconsistencies).isEqualTo(2);
+        assertThat(queueViewServiceUnderTest.findQueue(21)).isEmpty();
+        assertThat(queueViewServiceUnderTest.findQueue(30)).extracting(Reservation::getId).containsExactly(5);
+        assertThat(meterRegistry.get("reservation.queue.view.inconsistencies").counter().count()).isEqualTo(2);
+    }
+
+    private Reservation buildReservation(Integer id, Integer customerId, Integer bookId, Integer position){
+        Reservation reservation = new Reservation();
+        reservation.setId(id);
+        reservation.setCustomerId(customerId);
+        reservation.setCustomerEmail("customer" + customerId + "@mail.com");
+        reservation.setBookId(bookId);
+        reservation.setBookTitle("Book " + bookId);
+        reservation.setPosition(position);
+        reservation.setCreationReservationDate(LocalDateTime.of(2020, 6, id, 10, 0, 0, 123_456_000));
+        reservation.setSoonDisponibilityDate(LocalDate.of(2020, 6, id + 2));
+        return reservation;
+    }
+}
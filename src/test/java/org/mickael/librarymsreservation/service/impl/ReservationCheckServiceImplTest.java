@@ -0,0 +1,147 @@
+package org.mickael.librarymsreservation.service.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mickael.librarymsreservation.exception.NotFoundException;
+import org.mickael.librarymsreservation.exception.ServiceUnavailableException;
+import org.mickael.librarymsreservation.model.ReservationCheck;
+import org.mickael.librarymsreservation.proxy.FeignBookProxy;
+import org.mickael.librarymsreservation.proxy.FeignLoanProxy;
+import org.mickael.librarymsreservation.service.contract.CoalescingLookupServiceContract;
+import org.mickael.librarymsreservation.service.contract.LoanCacheServiceContract;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.times;
+
+class ReservationCheckServiceImplTest {
+
+    @Mock
+    private FeignLoanProxy feignLoanProxy;
+
+    @Mock
+    private FeignBookProxy feignBookProxy;
+
+    @Mock
+    private LoanCacheServiceContract loanCacheServiceContract;
+
+    @Mock
+    private CoalescingLookupServiceContract coalescingLookupServiceContract;
+
+    private ExecutorService executorService;
+
+    private ReservationCheckServiceImpl reservationCheckServiceUnderTest;
+
+    private static final String TOKEN = "Bearer token";
+
+    @BeforeEach
+    void setUp(){
+        MockitoAnnotations.initMocks(this);
+        executorService = Executors.newFixedThreadPool(4);
+        reservationCheckServiceUnderTest = new ReservationCheckServiceImpl(feignLoanProxy, feignBookProxy, loanCacheServiceContract, coalescingLookupServiceContract, executorService, 500);
+    }
+
+    @AfterEach
+    void tearDown(){
+        executorService.shutdownNow();
+    }
+
+    @Test
+    void itShouldReturnTheResultOfTheFourCalls(){
+        //Given
+        Integer customerId = 2;
+        Integer bookId = 18;
+        List<LocalDate> listReturnLoanDate = Collections.singletonList(LocalDate.now());
+        given(loanCacheServiceContract.getSoonReturned(bookId, TOKEN)).willReturn(listReturnLoanDate);
+        given(feignBookProxy.numberOfCopyForBook(bookId, TOKEN)).willReturn(3);
+        given(coalescingLookupServiceContract.numberOfCopyAvailableForBook(bookId, TOKEN)).willReturn(1);
+        given(feignLoanProxy.checkIfLoanExistForCustomerIdAndBookId(customerId, bookId, TOKEN)).willReturn(true);
+
+        //When
+        ReservationCheck reservationCheck = reservationCheckServiceUnderTest.checkReservation(customerId, bookId, "token");
+
+        //Then
+        assertThat(reservationCheck.getListReturnLoanDate()).isEqualTo(listReturnLoanDate);
+        assertThat(reservationCheck.getNumberOfCopies()).isEqualTo(3);
+        assertThat(reservationCheck.getCopiesAvailable()).isEqualTo(1);
+        assertThat(reservationCheck.isLoanOngoing()).isTrue();
+    }
+
+    @Test
+    void itShouldCheckEachBookOnceAndInParallel(){
+        //Given
+        List<LocalDate> listReturnLoanDate = Collections.singletonList(LocalDate.now());
+        //the lookup of a book only answers once the lookup of the other book is running
+        CountDownLatch runningLookups = new CountDownLatch(2);
+        for (Integer bookId : Arrays.asList(18, 21)){
+            given(loanCacheServiceContract.getSoonReturned(bookId, TOKEN)).willAnswer(invocation -> {
+                runningLookups.countDown();
+                if (!runningLookups.await(400, TimeUnit.MILLISECONDS)){
+                    throw new IllegalStateException("The books are checked one after the other");
+                }
+                return listReturnLoanDate;
+            });
+            given(feignBookProxy.numberOfCopyForBook(bookId, TOKEN)).willReturn(bookId / 6);
+            given(coalescingLookupServiceContract.numberOfCopyAvailableForBook(bookId, TOKEN)).willReturn(0);
+        }
+
+        //When
+        Map<Integer, ReservationCheck> reservationCheckByBookId = reservationCheckServiceUnderTest.checkBooks(Arrays.asList(18, 21, 18), TOKEN);
+
+        //Then
+        assertThat(reservationCheckByBookId).containsOnlyKeys(18, 21);
+        assertThat(reservationCheckByBookId.get(18).getNumberOfCopies()).isEqualTo(3);
+        assertThat(reservationCheckByBookId.get(21).getListReturnLoanDate()).isEqualTo(listReturnLoanDate);
+        then(feignBookProxy).should(times(1)).numberOfCopyForBook(18, TOKEN);
+        then(loanCacheServiceContract).should(times(1)).getSoonReturned(18, TOKEN);
+    }
+
+    @Test
+    void itShouldRethrowTheFirstFailureWithoutWaitingForTheOtherCalls(){
+        //Given
+        Integer customerId = 2;
+        Integer bookId = 18;
+        given(loanCacheServiceContract.getSoonReturned(bookId, TOKEN)).willAnswer(invocation -> {
+            Thread.sleep(5000);
+            return Collections.emptyList();
+        });
+        given(feignBookProxy.numberOfCopyForBook(bookId, TOKEN)).willThrow(new NotFoundException("book not found"));
+
+        //When
+        //Then
+        assertThatThrownBy(() -> reservationCheckServiceUnderTest.checkReservation(customerId, bookId, TOKEN))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessageContaining("book not found");
+    }
+
+    @Test
+    void itShouldThrowServiceUnavailableExceptionWhenTimeout(){
+        //Given
+        Integer customerId = 2;
+        Integer bookId = 18;
+        given(loanCacheServiceContract.getSoonReturned(bookId, TOKEN)).willAnswer(invocation -> {
+            Thread.sleep(5000);
+            return Collections.emptyList();
+        });
+
+        //When
+        //Then
+        assertThatThrownBy(() -> reservationCheckServiceUnderTest.checkReservation(customerId, bookId, TOKEN))
+                .isInstanceOf(ServiceUnavailableException.class);
+    }
+}
@@ -0,0 +1,89 @@
+package org.mickael.librarymsreservation.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mickael.librarymsreservation.model.ExportFormat;
+import org.mickael.librarymsreservation.model.QueueMode;
+import org.mickael.librarymsreservation.model.Reservation;
+import org.mickael.librarymsreservation.repository.ReservationRepository;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import javax.persistence.EntityManager;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.times;
+
+class ReservationExportServiceImplTest {
+
+    @Mock
+    private ReservationRepository reservationRepository;
+
+    @Mock
+    private EntityManager entityManager;
+
+    private ReservationExportServiceImpl reservationExportServiceUnderTest;
+
+    @BeforeEach
+    void setUp(){
+        MockitoAnnotations.initMocks(this);
+        //same date format as the mapper configured by spring boot
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+        reservationExportServiceUnderTest = new ReservationExportServiceImpl(reservationRepository, entityManager, objectMapper, 2, QueueMode.POSITION);
+    }
+
+    @Test
+    void itShouldExportOneJsonReservationPerLine() throws Exception {
+        //Given
+        given(reservationRepository.streamAll()).willReturn(Stream.of(buildReservation(1, "Dune"), buildReservation(2, "Hyperion"), buildReservation(3, "Ubik")));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        //When
+        long count = reservationExportServiceUnderTest.export(ExportFormat.NDJSON, outputStream);
+
+        //Then
+        String[] lines = outputStream.toString(StandardCharsets.UTF_8.name()).split("\n");
+        assertThat(count).isEqualTo(3);
+        assertThat(lines).hasSize(3);
+        assertThat(lines[0]).startsWith("{\"id\":1,").contains("\"bookTitle\":\"Dune\"").contains("\"endOfPriority\":\"2020-06-12\"");
+        assertThat(lines[2]).startsWith("{\"id\":3,");
+        then(entityManager).should(times(3)).detach(any(Reservation.class));
+    }
+
+    @Test
+    void itShouldExportCsvWithEscapedValues() throws Exception {
+        //Given
+        given(reservationRepository.streamAll()).willReturn(Stream.of(buildReservation(1, "Le \"Horla\", et autres")));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        //When
+        long count = reservationExportServiceUnderTest.export(ExportFormat.CSV, outputStream);
+
+        //Then
+        String[] lines = outputStream.toString(StandardCharsets.UTF_8.name()).split("\n");
+        assertThat(count).isEqualTo(1);
+        assertThat(lines[0]).startsWith("id,");
+        assertThat(lines[1]).isEqualTo("1,,,2020-06-12,4,,,,7,\"Le \"\"Horla\"\", et autres\",1");
+    }
+
+    private Reservation buildReservation(Integer id, String bookTitle){
+        Reservation reservation = new Reservation();
+        reservation.setId(id);
+        reservation.setEndOfPriority(LocalDate.of(2020, 6, 12));
+        reservation.setCustomerId(4);
+        reservation.setBookId(7);
+        reservation.setBookTitle(bookTitle);
+        reservation.setPosition(1);
+        return reservation;
+    }
+}
@@ -0,0 +1,81 @@
+package org.mickael.librarymsreservation.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mickael.librarymsreservation.model.ReservationKey;
+import org.mickael.librarymsreservation.repository.ReservationRepository;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+
+class ReservationPairIndexServiceImplTest {
+
+    @Mock
+    private ReservationRepository reservationRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ReservationPairIndexServiceImpl reservationPairIndexServiceUnderTest;
+
+    @BeforeEach
+    void setUp(){
+        MockitoAnnotations.initMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        reservationPairIndexServiceUnderTest = new ReservationPairIndexServiceImpl(reservationRepository, meterRegistry);
+    }
+
+    @Test
+    void itShouldAskTheDatabaseUntilTheIndexIsBuilt(){
+        //Given
+        AtomicInteger databaseChecks = new AtomicInteger();
+
+        //When
+        boolean exists = reservationPairIndexServiceUnderTest.exists(2, 18, () -> databaseChecks.incrementAndGet() > 0);
+
+        //Then
+        assertThat(exists).isTrue();
+        assertThat(databaseChecks.get()).isEqualTo(1);
+    }
+
+    @Test
+    void itShouldAnswerNoWithoutTheDatabaseWhenThePairIsNotIndexed(){
+        //Given
+        given(reservationRepository.streamAllKeys()).willReturn(Stream.of(new ReservationKey(2, 18), new ReservationKey(3, 21)));
+        reservationPairIndexServiceUnderTest.rebuild();
+        AtomicInteger databaseChecks = new AtomicInteger();
+
+        //When
+        boolean unknownPair = reservationPairIndexServiceUnderTest.exists(2, 21, () -> databaseChecks.incrementAndGet() > 0);
+        boolean indexedPair = reservationPairIndexServiceUnderTest.exists(2, 18, () -> databaseChecks.incrementAndGet() > 0);
+        boolean deletedMeanwhile = reservationPairIndexServiceUnderTest.exists(3, 21, () -> databaseChecks.incrementAndGet() < 0);
+
+        //Then
+        assertThat(unknownPair).isFalse();
+        assertThat(indexedPair).isTrue();
+        assertThat(deletedMeanwhile).isFalse();
+        assertThat(databaseChecks.get()).isEqualTo(2);
+        assertThat(reservationPairIndexServiceUnderTest.falsePositiveRate()).isEqualTo(0.5);
+        assertThat(meterRegistry.get("reservation.pair.index.size").gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    void itShouldFollowTheSavedAndDeletedReservations(){
+        //Given
+        given(reservationRepository.streamAllKeys()).willReturn(Stream.of(new ReservationKey(2, 18)));
+        reservationPairIndexServiceUnderTest.rebuild();
+
+        //When
+        reservationPairIndexServiceUnderTest.addAfterCommit(4, 30);
+        reservationPairIndexServiceUnderTest.removeAfterCommit(2, 18);
+
+        //Then
+        assertThat(reservationPairIndexServiceUnderTest.exists(4, 30, () -> true)).isTrue();
+        assertThat(reservationPairIndexServiceUnderTest.exists(2, 18, () -> true)).isFalse();
+    }
+}
@@ -1,13 +1,29 @@
 package org.mickael.librarymsreservation.service.impl;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.mickael.librarymsreservation.exception.BadRequestException;
 import org.mickael.librarymsreservation.exception.ReservationAlreadyExistException;
 import org.mickael.librarymsreservation.exception.ReservationNotAllowedException;
 import org.mickael.librarymsreservation.exception.ReservationNotFoundException;
+import org.mickael.librarymsreservation.model.ImportStatus;
+import org.mickael.librarymsreservation.model.NotificationReport;
+import org.mickael.librarymsreservation.model.QueueMode;
 import org.mickael.librarymsreservation.model.Reservation;
+import org.mickael.librarymsreservation.model.ReservationCheck;
+import org.mickael.librarymsreservation.model.ReservationFilter;
+import org.mickael.librarymsreservation.model.ReservationImportReport;
+import org.mickael.librarymsreservation.model.ReservationImportResult;
+import org.mickael.librarymsreservation.model.ReservationKey;
+import org.mickael.librarymsreservation.model.ReservationPage;
+import org.mickael.librarymsreservation.repository.ReservationJdbcRepository;
 import org.mickael.librarymsreservation.repository.ReservationRepository;
+import org.mickael.librarymsreservation.scheduler.NotificationQueue;
+import org.mickael.librarymsreservation.service.contract.MailBatchServiceContract;
+import org.mickael.librarymsreservation.service.contract.MailOutboxServiceContract;
+import org.mickael.librarymsreservation.utils.HandlerCursor;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.Mock;
@@ -15,29 +31,55 @@ import org.mockito.MockitoAnnotations;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 
+import javax.persistence.EntityManager;
+
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.times;
 
 class ReservationServiceImplTest {
 
     @Mock
     private ReservationRepository reservationRepository;
 
+    @Mock
+    private ReservationJdbcRepository reservationJdbcRepository;
+
+    @Mock
+    private EntityManager entityManager;
+
     @Mock
     private JavaMailSender javaMailSender;
 
     @Mock
     private SimpleMailMessage preConfiguredMessage;
 
+    @Mock
+    private MailOutboxServiceContract mailOutboxServiceContract;
+
+    @Mock
+    private MailBatchServiceContract mailBatchServiceContract;
+
+    @Mock
+    private NotificationQueue notificationQueue;
+
     private ReservationServiceImpl reservationServiceUnderTest;
 
     private static final String NOT_FOUND_MSG = "Reservation not Found in repository";
@@ -47,6 +89,12 @@ class ReservationServiceImplTest {
     @Captor
     private ArgumentCaptor<Reservation> reservationArgumentCaptor;
 
+    @Captor
+    private ArgumentCaptor<SimpleMailMessage> mailMessageArgumentCaptor;
+
+    @Captor
+    private ArgumentCaptor<List<SimpleMailMessage>> mailMessagesArgumentCaptor;
+
     @BeforeEach
     void setUp(){
         MockitoAnnotations.initMocks(this);
@@ -61,7 +109,9 @@ class ReservationServiceImplTest {
                                           "\nN'oubliez pas de ramener vos autres emprunts." +
                                           "\n\n\nBibliothèque d'OCland" +
                                           "\n\n\n\n\nCeci est un envoi automatique, merci de ne pas y répondre.");
-        reservationServiceUnderTest = new ReservationServiceImpl(reservationRepository,javaMailSender,preConfiguredMessage);
+        reservationServiceUnderTest = new ReservationServiceImpl(reservationRepository,reservationJdbcRepository,entityManager,javaMailSender,preConfiguredMessage,mailOutboxServiceContract,mailBatchServiceContract,2,notificationQueue,2,3,QueueMode.POSITION,new ReservationPairIndexServiceImpl(reservationRepository,new SimpleMeterRegistry()),
+                new QueueViewServiceImpl(reservationRepository,entityManager,new SimpleMeterRegistry(),QueueMode.POSITION),
+                new CustomerReservationCacheServiceImpl(new SimpleMeterRegistry(),100,Duration.ofMinutes(1)));
     }
 
     @Test
@@ -77,6 +127,66 @@ class ReservationServiceImplTest {
         assertThat(reservationServiceUnderTest.findAll()).isNotEmpty();
     }
 
+    @Test
+    void itShouldReturnAPageOfReservationWithTheNextCursor(){
+        //Given
+        ReservationFilter reservationFilter = new ReservationFilter(1, null, null, null);
+        Reservation reservation1 = new Reservation();
+        reservation1.setId(11);
+        Reservation reservation2 = new Reservation();
+        reservation2.setId(12);
+        Reservation reservation3 = new Reservation();
+        reservation3.setId(13);
+        given(reservationRepository.findPage(10, 3, reservationFilter)).willReturn(Arrays.asList(reservation1, reservation2, reservation3));
+        given(reservationRepository.findPage(12, 3, reservationFilter)).willReturn(Collections.singletonList(reservation3));
+
+        //When
+        ReservationPage firstPage = reservationServiceUnderTest.findPage(HandlerCursor.encode(10), null, reservationFilter, false);
+        ReservationPage lastPage = reservationServiceUnderTest.findPage(firstPage.getNextCursor(), null, reservationFilter, false);
+
+        //Then
+        assertThat(firstPage.getContent()).containsExactly(reservation1, reservation2);
+        assertThat(HandlerCursor.decode(firstPage.getNextCursor())).isEqualTo(12);
+        assertThat(lastPage.getContent()).containsExactly(reservation3);
+        assertThat(lastPage.getNextCursor()).isNull();
+        assertThat(lastPage.getTotalCount()).isNull();
+        then(reservationRepository).should(times(0)).countByFilter(reservationFilter);
+    }
+
+    @Test
+    void itShouldCountTheReservationsOnlyWhenAsked(){
+        //Given
+        ReservationFilter reservationFilter = new ReservationFilter(1, null, null, null);
+        Reservation reservation1 = new Reservation();
+        reservation1.setId(11);
+        given(reservationRepository.findPage(null, 3, reservationFilter)).willReturn(Collections.singletonList(reservation1));
+        given(reservationRepository.countByFilter(reservationFilter)).willReturn(1L);
+
+        //When
+        ReservationPage polledPage = reservationServiceUnderTest.findPage(null, null, reservationFilter, false);
+        ReservationPage countedPage = reservationServiceUnderTest.findPage(null, null, reservationFilter, true);
+
+        //Then
+        assertThat(polledPage.getContent()).containsExactly(reservation1);
+        assertThat(polledPage.getTotalCount()).isNull();
+        assertThat(countedPage.getTotalCount()).isEqualTo(1L);
+        then(reservationRepository).should(times(1)).countByFilter(reservationFilter);
+    }
+
+    @Test
+    void itShouldReturnExceptionIfPageSizeOrCursorIsInvalid(){
+        //Given
+        ReservationFilter reservationFilter = new ReservationFilter();
+
+        //When
+
+        //Then
+        assertThatThrownBy(() -> reservationServiceUnderTest.findPage(null, 4, reservationFilter, false))
+                .isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> reservationServiceUnderTest.findPage("not-a-cursor", null, reservationFilter, false))
+                .isInstanceOf(BadRequestException.class);
+    }
+
     @Test
     @DisplayName("True if return one reservation")
     void itShouldReturnOneReservation(){
@@ -133,7 +243,7 @@ class ReservationServiceImplTest {
         reservation.setBookTitle(bookTitle);
 
         given(reservationRepository.findByCustomerIdAndBookId(customerId,bookId)).willReturn(null);
-        given(reservationRepository.findAllByBookId(bookId)).willReturn(Collections.emptyList());
+        given(reservationJdbcRepository.allocatePosition(bookId)).willReturn(1);
 
         //When
         reservationServiceUnderTest.save(reservation,listReturnLoanDate,numberOfCopies,copiesAvailable);
@@ -152,6 +262,103 @@ class ReservationServiceImplTest {
         assertThat(reservationArgumentCaptorValue.getSoonDisponibilityDate()).isEqualTo(reservation.getSoonDisponibilityDate());
     }
 
+    @Test
+    void itShouldEnqueueMailWhenCopyAvailable(){
+        //Given
+        List<LocalDate> listReturnLoanDate = new ArrayList<>();
+        Integer customerId = 2;
+        Integer bookId = 18;
+        Reservation reservation = new Reservation();
+        reservation.setCustomerId(customerId);
+        reservation.setCustomerFirstname("mickael");
+        reservation.setCustomerLastname("coz");
+        reservation.setCustomerEmail("coz.mickael@gmail.com");
+        reservation.setBookId(bookId);
+        reservation.setBookTitle("the witcher");
+        given(reservationRepository.findByCustomerIdAndBookId(customerId,bookId)).willReturn(null);
+        given(reservationJdbcRepository.allocatePosition(bookId)).willReturn(1);
+
+        //When
+        reservationServiceUnderTest.save(reservation,listReturnLoanDate,2,1);
+
+        //Then
+        then(mailOutboxServiceContract).should().enqueue(mailMessageArgumentCaptor.capture());
+        assertThat(mailMessageArgumentCaptor.getValue().getTo()).containsExactly(reservation.getCustomerEmail());
+        assertThat(mailMessageArgumentCaptor.getValue().getText()).contains(reservation.getBookTitle());
+        then(javaMailSender).shouldHaveNoInteractions();
+    }
+
+    @Test
+    void itShouldSaveReservationAfterTheLastEndOfPriorityWhenCopyAvailable(){
+        //Given
+        Integer customerId = 2;
+        Integer bookId = 18;
+        LocalDate lastEndOfPriority = LocalDate.now().plusDays(2);
+        Reservation reservation = new Reservation();
+        reservation.setCustomerId(customerId);
+        reservation.setBookId(bookId);
+        reservation.setBookTitle("the witcher");
+        given(reservationJdbcRepository.allocatePosition(bookId)).willReturn(3);
+        given(reservationRepository.findLastEndOfPriority(bookId)).willReturn(lastEndOfPriority);
+
+        //When
+        reservationServiceUnderTest.save(reservation,new ArrayList<>(),2,1);
+
+        //Then
+        then(reservationRepository).should().save(reservationArgumentCaptor.capture());
+        assertThat(reservationArgumentCaptor.getValue().getPosition()).isEqualTo(3);
+        assertThat(reservationArgumentCaptor.getValue().getSoonDisponibilityDate()).isEqualTo(lastEndOfPriority);
+        then(reservationRepository).should(times(0)).findAllByBookId(bookId);
+    }
+
+    @Test
+    void itShouldImportReservationsGroupedByBook(){
+        //Given
+        Integer bookWithLoans = 18;
+        Integer bookAvailable = 21;
+        List<LocalDate> listReturnLoanDate = Arrays.asList(LocalDate.now().plusDays(3), LocalDate.now().plusDays(8));
+        Map<Integer, ReservationCheck> reservationCheckByBookId = new HashMap<>();
+        reservationCheckByBookId.put(bookWithLoans, new ReservationCheck(listReturnLoanDate, 2, 0, false));
+        reservationCheckByBookId.put(bookAvailable, new ReservationCheck(Collections.emptyList(), 1, 1, false));
+        Reservation alreadyInQueue = new Reservation();
+        alreadyInQueue.setCustomerId(1);
+        alreadyInQueue.setBookId(bookWithLoans);
+        given(reservationRepository.findAllByBookIdIn(new HashSet<>(Arrays.asList(bookWithLoans, bookAvailable)))).willReturn(Collections.singletonList(alreadyInQueue));
+        given(reservationJdbcRepository.allocatePositions(bookWithLoans, 0)).willReturn(1);
+        given(reservationJdbcRepository.allocatePositions(bookAvailable, 0)).willReturn(0);
+        List<Reservation> reservations = Arrays.asList(
+                buildImportedReservation(2, bookWithLoans),
+                buildImportedReservation(1, bookWithLoans),
+                buildImportedReservation(3, bookAvailable),
+                buildImportedReservation(null, bookAvailable),
+                buildImportedReservation(4, bookWithLoans),
+                buildImportedReservation(5, bookAvailable),
+                buildImportedReservation(6, bookWithLoans));
+
+        //When
+        ReservationImportReport reservationImportReport = reservationServiceUnderTest.importReservations(reservations, reservationCheckByBookId);
+
+        //Then
+        assertThat(reservationImportReport.getCreated()).isEqualTo(4);
+        assertThat(reservationImportReport.getRejected()).isEqualTo(3);
+        assertThat(reservationImportReport.getResults()).extracting(ReservationImportResult::getStatus).containsExactly(
+                ImportStatus.CREATED, ImportStatus.ALREADY_EXIST, ImportStatus.CREATED, ImportStatus.INVALID,
+                ImportStatus.CREATED, ImportStatus.CREATED, ImportStatus.NOT_ALLOWED);
+        assertThat(reservationImportReport.getResults()).extracting(ReservationImportResult::getPosition).containsExactly(2, null, 1, null, 3, 2, null);
+        then(reservationJdbcRepository).should().allocatePositions(bookWithLoans, 2);
+        then(reservationJdbcRepository).should().allocatePositions(bookAvailable, 2);
+        then(reservationRepository).should().saveAll(anyList());
+        then(mailOutboxServiceContract).should(times(2)).enqueue(mailMessageArgumentCaptor.capture());
+    }
+
+    private Reservation buildImportedReservation(Integer customerId, Integer bookId){
+        Reservation reservation = new Reservation();
+        reservation.setCustomerId(customerId);
+        reservation.setBookId(bookId);
+        reservation.setBookTitle("the witcher");
+        return reservation;
+    }
+
     @Test
     void itShouldSaveReservationWhenNoBookDisponibilityAndOneReservation(){
         //Given
@@ -181,7 +388,7 @@ class ReservationServiceImplTest {
 
 
         given(reservationRepository.findByCustomerIdAndBookId(customerId,bookId)).willReturn(null);
-        given(reservationRepository.findAllByBookId(bookId)).willReturn(Collections.singletonList(reservation));
+        given(reservationJdbcRepository.allocatePosition(bookId)).willReturn(2);
 
 
         //When
@@ -228,7 +435,7 @@ class ReservationServiceImplTest {
 
 
         given(reservationRepository.findByCustomerIdAndBookId(customerId,bookId)).willReturn(null);
-        given(reservationRepository.findAllByBookId(bookId)).willReturn(Collections.emptyList());
+        given(reservationJdbcRepository.allocatePosition(bookId)).willReturn(1);
 
 
         //When
@@ -313,6 +520,7 @@ class ReservationServiceImplTest {
 
 
         given(reservationRepository.findByCustomerIdAndBookId(customerId,bookId)).willReturn(null);
+        given(reservationJdbcRepository.allocatePosition(bookId)).willReturn(1);
 
         //When
         //Then
@@ -386,6 +594,46 @@ class ReservationServiceImplTest {
         assertThat(reservationServiceUnderTest.findAllByBookId(bookId)).isNotEmpty();
     }
 
+    @Test
+    void itShouldReturnTheReservationsOfSeveralBooksGroupedByBook(){
+        //Given
+        Reservation reservation1 = new Reservation();
+        reservation1.setBookId(18);
+        reservation1.setPosition(2);
+        Reservation reservation2 = new Reservation();
+        reservation2.setBookId(21);
+        reservation2.setPosition(1);
+        Reservation reservation3 = new Reservation();
+        reservation3.setBookId(18);
+        reservation3.setPosition(1);
+        List<Integer> bookIds = Arrays.asList(18, 21, 30);
+        given(reservationRepository.findAllByBookIdIn(bookIds)).willReturn(new ArrayList<>(Arrays.asList(reservation1, reservation2, reservation3)));
+
+        //When
+        Map<Integer, List<Reservation>> reservationsByBookId = reservationServiceUnderTest.findAllByBookIds(bookIds);
+
+        //Then
+        assertThat(reservationsByBookId).containsOnlyKeys(18, 21, 30);
+        assertThat(reservationsByBookId.get(18)).containsExactly(reservation3, reservation1);
+        assertThat(reservationsByBookId.get(21)).containsExactly(reservation2);
+        assertThat(reservationsByBookId.get(30)).isEmpty();
+        then(reservationRepository).should(times(0)).findAllByBookId(18);
+    }
+
+    @Test
+    void itShouldCheckSeveralPairsInOneQuery(){
+        //Given
+        List<ReservationKey> reservationKeys = Arrays.asList(new ReservationKey(2, 18), new ReservationKey(2, 21), new ReservationKey(3, 18));
+        given(reservationJdbcRepository.findExistingPairs(new Integer[]{2, 2, 3}, new Integer[]{18, 21, 18})).willReturn(Arrays.asList(0, 2));
+
+        //When
+        boolean[] exist = reservationServiceUnderTest.checkIfReservationsExist(reservationKeys);
+
+        //Then
+        assertThat(exist).containsExactly(true, false, true);
+        then(reservationRepository).should(times(0)).existByCustomerIdAndBookId(2, 18);
+    }
+
     @Test
     void itShouldCheckIfReservationExistByCustomerIdAndByBookId(){
         //Given
@@ -398,6 +646,26 @@ class ReservationServiceImplTest {
         assertThat(reservationServiceUnderTest.checkIfReservationExistForCustomerIdAndBookId(customerId,bookId)).isTrue();
     }
 
+    @Test
+    void itShouldCheckInTheDatabaseAPairAbsentFromTheIndex(){
+        //Given
+        Integer customerId = 2;
+        Integer bookId = 18;
+        given(reservationRepository.streamAllKeys()).willReturn(Stream.empty());
+        ReservationPairIndexServiceImpl reservationPairIndexService = new ReservationPairIndexServiceImpl(reservationRepository,new SimpleMeterRegistry());
+        reservationPairIndexService.rebuild();
+        ReservationServiceImpl indexedServiceUnderTest = new ReservationServiceImpl(reservationRepository,reservationJdbcRepository,entityManager,javaMailSender,
+                preConfiguredMessage,mailOutboxServiceContract,mailBatchServiceContract,2,notificationQueue,2,3,QueueMode.POSITION,reservationPairIndexService,
+                new QueueViewServiceImpl(reservationRepository,entityManager,new SimpleMeterRegistry(),QueueMode.POSITION),
+                new CustomerReservationCacheServiceImpl(new SimpleMeterRegistry(),100,Duration.ofMinutes(1)));
+        //reserved through another instance after the rebuild
+        given(reservationRepository.existByCustomerIdAndBookId(customerId,bookId)).willReturn(true);
+
+        //When
+        //Then
+        assertThat(indexedServiceUnderTest.checkIfReservationExistForCustomerIdAndBookId(customerId,bookId)).isTrue();
+    }
+
     @Test
     void itShouldUpdateReservationBook(){
         //Given
@@ -406,7 +674,7 @@ class ReservationServiceImplTest {
         listReturnLoanDate.add(now);
         Integer bookId = 18;
         Reservation reservation = new Reservation();
-        given(reservationRepository.findAllByBookId(bookId)).willReturn(Collections.singletonList(reservation));
+        given(reservationRepository.findAllByBookIdForUpdate(bookId)).willReturn(Collections.singletonList(reservation));
 
         //when
         reservationServiceUnderTest.updateDateResaBookId(bookId,listReturnLoanDate);
@@ -415,12 +683,77 @@ class ReservationServiceImplTest {
         assertThat(reservation.getSoonDisponibilityDate()).isEqualTo(now);
     }
 
+    @Test
+    void itShouldSendMailsByChunkForReservationsAvailableToday(){
+        //Given
+        List<Reservation> reservations = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Reservation reservation = new Reservation();
+            reservation.setCreationReservationDate(LocalDateTime.now());
+            reservation.setSoonDisponibilityDate(LocalDate.now());
+            reservation.setEndOfPriority(LocalDate.now().plusDays(2));
+            reservation.setCustomerEmail("customer" + i + "@gmail.com");
+            reservation.setBookTitle("the witcher");
+            reservations.add(reservation);
+        }
+        given(reservationRepository.streamNotificationsToSend(LocalDate.now())).willReturn(reservations.stream());
+        given(reservationRepository.countAlreadyNotified(LocalDate.now())).willReturn(4L);
+        given(mailBatchServiceContract.sendAll(anyList())).willReturn(Collections.emptyMap());
+
+        //When
+        NotificationReport notificationReport = reservationServiceUnderTest.updateReservationsAndSendMail();
+
+        //Then
+        //chunk size is 2: one full chunk, then the remaining mail
+        then(mailBatchServiceContract).should(times(2)).sendAll(anyList());
+        then(reservationRepository).should(times(2)).markNotified(anyList(), eq(LocalDate.now()));
+        then(entityManager).should(times(1)).clear();
+        then(reservationRepository).should(times(0)).findAll();
+        assertThat(notificationReport.getSent()).isEqualTo(3);
+        assertThat(notificationReport.getSkipped()).isEqualTo(4);
+    }
+
+    @Test
+    void itShouldSendAvailabilityMailsAndSkipTheMovedOrNotifiedReservations(){
+        //Given
+        Reservation availableReservation = new Reservation();
+        availableReservation.setId(1);
+        availableReservation.setCreationReservationDate(LocalDateTime.now());
+        availableReservation.setSoonDisponibilityDate(LocalDate.now());
+        availableReservation.setEndOfPriority(LocalDate.now().plusDays(2));
+        availableReservation.setCustomerEmail("coz.mickael@gmail.com");
+        Reservation movedReservation = new Reservation();
+        movedReservation.setId(2);
+        movedReservation.setSoonDisponibilityDate(LocalDate.now().plusDays(4));
+        Reservation notifiedReservation = new Reservation();
+        notifiedReservation.setId(3);
+        notifiedReservation.setSoonDisponibilityDate(LocalDate.now());
+        notifiedReservation.setEndOfPriority(LocalDate.now().plusDays(2));
+        notifiedReservation.setNotifiedEndOfPriority(LocalDate.now().plusDays(2));
+        List<Integer> reservationIds = Arrays.asList(1, 2, 3);
+        //chunk size is 2
+        given(reservationRepository.findAllByIdFromDatabase(Arrays.asList(1, 2))).willReturn(Arrays.asList(availableReservation, movedReservation));
+        given(reservationRepository.findAllByIdFromDatabase(Collections.singletonList(3))).willReturn(Collections.singletonList(notifiedReservation));
+        given(mailBatchServiceContract.sendAll(anyList())).willReturn(Collections.emptyMap());
+
+        //When
+        NotificationReport notificationReport = reservationServiceUnderTest.sendAvailabilityMails(reservationIds);
+
+        //Then
+        then(mailBatchServiceContract).should().sendAll(mailMessagesArgumentCaptor.capture());
+        assertThat(mailMessagesArgumentCaptor.getValue()).hasSize(1);
+        then(notificationQueue).should().schedule(2, movedReservation.getSoonDisponibilityDate());
+        then(reservationRepository).should().markNotified(Collections.singletonList(1), LocalDate.now());
+        assertThat(notificationReport.getSent()).isEqualTo(1);
+        assertThat(notificationReport.getSkipped()).isEqualTo(1);
+    }
+
     @Test
     void itShouldThrowReservationNotFoundExceptionWhenDelete(){
         //Given
         Integer reservationId = 1;
         List<LocalDate> listReturnLoanDate = new ArrayList<>();
-        given(reservationRepository.findById(reservationId)).willReturn(Optional.empty());
+        given(reservationRepository.findByIdForUpdate(reservationId)).willReturn(Optional.empty());
 
         //When
         //Then
@@ -453,28 +786,100 @@ class ReservationServiceImplTest {
         reservation.setBookId(bookId);
         reservation.setBookTitle(bookTitle);
 
-        Reservation reservation2 = new Reservation();
-        reservation2.setPosition(2);
+        given(reservationRepository.findByIdForUpdate(reservationId)).willReturn(Optional.of(reservation));
+        given(reservationRepository.findIdsByBookIdOrderByPosition(bookId)).willReturn(Arrays.asList(2, 3, 4));
 
-        Reservation reservation3 = new Reservation();
-        reservation3.setPosition(3);
+        //When
+        reservationServiceUnderTest.delete(reservationId, listReturnLoanDate);
 
-        Reservation reservation4 = new Reservation();
-        reservation4.setPosition(4);
+        //Then
+        then(reservationRepository).should().deleteById(reservationId);
+        then(reservationJdbcRepository).should().releasePosition(bookId);
+        then(reservationRepository).should().shiftPositionsAfter(bookId, 1);
+        then(reservationRepository).should(times(0)).saveAll(anyList());
+        then(reservationJdbcRepository).should().updateDates(Arrays.asList(2, 3, 4),
+                Arrays.asList(LocalDate.now(), LocalDate.now().plusDays(2), LocalDate.now().plusDays(4)),
+                Arrays.asList(LocalDate.now().plusDays(2), LocalDate.now().plusDays(4), LocalDate.now().plusDays(6)));
+        then(notificationQueue).should().schedule(4, LocalDate.now().plusDays(4));
+    }
 
-        List<Reservation> reservations = new ArrayList<>();
-        reservations.add(reservation2);
-        reservations.add(reservation3);
-        reservations.add(reservation4);
-        given(reservationRepository.findById(reservationId)).willReturn(Optional.of(reservation));
-        given(reservationRepository.findAllByBookId(bookId)).willReturn(reservations);
+    @Test
+    void itShouldDeleteReservationAndKeepEndOfPriorityWhenLoanOngoing(){
+        //Given
+        Integer reservationId = 1;
+        Integer bookId = 18;
+        List<LocalDate> listReturnLoanDate = Arrays.asList(LocalDate.now().plusDays(5), LocalDate.now().plusDays(9));
+        Reservation reservation = new Reservation();
+        reservation.setId(reservationId);
+        reservation.setPosition(2);
+        reservation.setBookId(bookId);
+        given(reservationRepository.findByIdForUpdate(reservationId)).willReturn(Optional.of(reservation));
+        given(reservationRepository.findIdsByBookIdOrderByPosition(bookId)).willReturn(Arrays.asList(5, 6));
 
         //When
         reservationServiceUnderTest.delete(reservationId, listReturnLoanDate);
 
         //Then
-        assertThat(reservation2.getPosition()).isEqualTo(1);
-        assertThat(reservation3.getPosition()).isEqualTo(2);
-        assertThat(reservation4.getPosition()).isEqualTo(3);
+        then(reservationRepository).should().shiftPositionsAfter(bookId, 2);
+        then(reservationJdbcRepository).should().updateDates(Arrays.asList(5, 6), listReturnLoanDate, null);
+    }
+
+    @Test
+    void itShouldOnlyDeleteOneRowWhenQueueOrderedByTimestamp(){
+        //Given
+        ReservationServiceImpl timestampQueueServiceUnderTest = new ReservationServiceImpl(reservationRepository,reservationJdbcRepository,entityManager,javaMailSender,
+                preConfiguredMessage,mailOutboxServiceContract,mailBatchServiceContract,2,notificationQueue,2,3,QueueMode.TIMESTAMP,
+                new ReservationPairIndexServiceImpl(reservationRepository,new SimpleMeterRegistry()),
+                new QueueViewServiceImpl(reservationRepository,entityManager,new SimpleMeterRegistry(),QueueMode.TIMESTAMP),
+                new CustomerReservationCacheServiceImpl(new SimpleMeterRegistry(),100,Duration.ofMinutes(1)));
+        Integer reservationId = 1;
+        Integer bookId = 18;
+        List<LocalDate> listReturnLoanDate = Arrays.asList(LocalDate.now().plusDays(5), LocalDate.now().plusDays(9));
+        Reservation reservation = new Reservation();
+        reservation.setId(reservationId);
+        reservation.setPosition(1);
+        reservation.setBookId(bookId);
+        given(reservationRepository.findByIdForUpdate(reservationId)).willReturn(Optional.of(reservation));
+        given(reservationRepository.findIdsByBookIdOrderByCreation(bookId)).willReturn(Arrays.asList(5, 6));
+
+        //When
+        timestampQueueServiceUnderTest.delete(reservationId, listReturnLoanDate);
+
+        //Then
+        then(reservationRepository).should(times(0)).shiftPositionsAfter(bookId, 1);
+        then(reservationJdbcRepository).should().updateDates(Arrays.asList(5, 6), listReturnLoanDate, null);
+    }
+
+    @Test
+    void itShouldComputePositionWhenQueueOrderedByTimestamp(){
+        //Given
+        ReservationServiceImpl timestampQueueServiceUnderTest = new ReservationServiceImpl(reservationRepository,reservationJdbcRepository,entityManager,javaMailSender,
+                preConfiguredMessage,mailOutboxServiceContract,mailBatchServiceContract,2,notificationQueue,2,3,QueueMode.TIMESTAMP,
+                new ReservationPairIndexServiceImpl(reservationRepository,new SimpleMeterRegistry()),
+                new QueueViewServiceImpl(reservationRepository,entityManager,new SimpleMeterRegistry(),QueueMode.TIMESTAMP),
+                new CustomerReservationCacheServiceImpl(new SimpleMeterRegistry(),100,Duration.ofMinutes(1)));
+        Integer customerId = 2;
+        Reservation reservation1 = new Reservation();
+        reservation1.setId(7);
+        reservation1.setBookId(18);
+        reservation1.setPosition(5);
+        Reservation reservation2 = new Reservation();
+        reservation2.setId(9);
+        reservation2.setBookId(21);
+        reservation2.setPosition(1);
+        Map<Integer, Integer> positions = new HashMap<>();
+        positions.put(7, 2);
+        positions.put(8, 1);
+        positions.put(9, 1);
+        given(reservationRepository.findAllByCustomerId(customerId)).willReturn(Arrays.asList(reservation1, reservation2));
+        given(reservationJdbcRepository.findQueuePositions(new HashSet<>(Arrays.asList(18, 21)))).willReturn(positions);
+
+        //When
+        List<Reservation> reservations = timestampQueueServiceUnderTest.findAllByCustomerId(customerId);
+
+        //Then
+        assertThat(reservations).extracting(Reservation::getPosition).containsExactly(2, 1);
+        then(entityManager).should().detach(reservation1);
+        then(entityManager).should().detach(reservation2);
     }
 }
@@ -0,0 +1,63 @@
+package org.mickael.librarymsreservation.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongHashSetTest {
+
+    private LongHashSet longHashSetUnderTest;
+
+    @BeforeEach
+    void setUp(){
+        longHashSetUnderTest = new LongHashSet(4);
+    }
+
+    @Test
+    void itShouldAddAndRemoveKeys(){
+        //Given
+        longHashSetUnderTest.add(0L);
+        longHashSetUnderTest.add(42L);
+
+        //When
+        boolean addedTwice = longHashSetUnderTest.add(42L);
+        boolean removed = longHashSetUnderTest.remove(0L);
+
+        //Then
+        assertThat(addedTwice).isFalse();
+        assertThat(removed).isTrue();
+        assertThat(longHashSetUnderTest.contains(0L)).isFalse();
+        assertThat(longHashSetUnderTest.contains(42L)).isTrue();
+        assertThat(longHashSetUnderTest.size()).isEqualTo(1);
+    }
+
+    @Test
+    void itShouldBehaveLikeAHashSetAfterManyRemovals(){
+        //Given
+        Set<Long> expected = new HashSet<>();
+        Random random = new Random(7);
+
+        //When
+        for (int i = 0; i < 50_000; i++) {
+            //small range of keys: long runs of collisions and many removals
+            long key = random.nextInt(2_000) - 1_000L;
+            if (random.nextBoolean()){
+                assertThat(longHashSetUnderTest.add(key)).isEqualTo(expected.add(key));
+            } else {
+                assertThat(longHashSetUnderTest.remove(key)).isEqualTo(expected.remove(key));
+            }
+        }
+
+        //Then
+        assertThat(longHashSetUnderTest.size()).isEqualTo(expected.size());
+        for (long key = -1_000L; key < 1_000L; key++) {
+            assertThat(longHashSetUnderTest.contains(key)).isEqualTo(expected.contains(key));
+        }
+        assertThat(longHashSetUnderTest.memoryBytes()).isGreaterThanOrEqualTo(expected.size() * 2L * Long.BYTES);
+    }
+}